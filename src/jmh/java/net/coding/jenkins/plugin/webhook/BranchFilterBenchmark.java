@@ -0,0 +1,88 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import net.coding.jenkins.plugin.webhook.filter.BranchFilter;
+import net.coding.jenkins.plugin.webhook.filter.BranchFilterConfig;
+import net.coding.jenkins.plugin.webhook.filter.BranchFilterFactory;
+import net.coding.jenkins.plugin.webhook.filter.BranchFilterType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Branch filtering as done for every event, over a rotating set of branches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BranchFilterBenchmark {
+
+    @Param({"All", "NameBasedFilter", "RegexBasedFilter"})
+    public BranchFilterType type;
+
+    /**
+     * Number of distinct branches pushed to, more than the decisions remembered by the filters when large.
+     */
+    @Param({"8", "1024"})
+    public int branches;
+
+    private BranchFilterConfig config;
+    private BranchFilter filter;
+    private String[] names;
+    private String[] refs;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        config = new BranchFilterConfig(type,
+                "master, develop, release/**, feature/*, hotfix-*", "feature/wip-*, release/**/draft",
+                "(refs/heads/)?(master|develop|release/.*|feature/[^/]+|hotfix-.*)");
+        filter = BranchFilterFactory.newBranchFilter(config);
+        names = new String[branches];
+        refs = new String[branches];
+        String[] prefixes = {"feature/", "release/1.", "hotfix-", "feature/wip-", "bugfix/"};
+        for (int i = 0; i < branches; i++) {
+            names[i] = prefixes[i % prefixes.length] + i;
+            refs[i] = "refs/heads/" + names[i];
+        }
+    }
+
+    @Benchmark
+    public boolean isBranchAllowed() {
+        int i = next++ % branches;
+        return filter.isBranchAllowed(names[i], refs[i]);
+    }
+
+    /**
+     * Building the filter, as done on every config save and load.
+     */
+    @Benchmark
+    public BranchFilter newBranchFilter() {
+        return BranchFilterFactory.newBranchFilter(config);
+    }
+}
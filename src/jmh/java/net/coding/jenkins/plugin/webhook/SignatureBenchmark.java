@@ -0,0 +1,81 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import com.google.common.collect.ImmutableMap;
+import net.coding.jenkins.plugin.bean.WebHookTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signature checks of already read deliveries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SignatureBenchmark {
+
+    @Param({"1", "500", "5000"})
+    public int commits;
+
+    private final WebHookHelperV1 v1 = new WebHookHelperV1();
+    private final WebHookHelperV2 v2 = new WebHookHelperV2();
+
+    private WebHookTask v1Task;
+    private WebHookTask v2Sha1Task;
+    private WebHookTask v2Sha256Task;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] v1Push = WebHookPayloads.v1Push(commits);
+        byte[] v2Push = WebHookPayloads.v2Push(commits);
+        v1Task = v1.readTaskFromRequest(SyntheticRequest.of(ImmutableMap.of("X-Coding-Event", "push"), v1Push));
+        v2Sha1Task = v2.readTaskFromRequest(SyntheticRequest.of(ImmutableMap.of(
+                "X-Coding-Event", "push",
+                "X-Coding-Signature", WebHookPayloads.sha1Signature(v2Push)), v2Push));
+        v2Sha256Task = v2.readTaskFromRequest(SyntheticRequest.of(ImmutableMap.of(
+                "X-Coding-Event", "push",
+                "X-Coding-Signature", WebHookPayloads.sha256Signature(v2Push)), v2Push));
+    }
+
+    @Benchmark
+    public boolean v1Token() {
+        return v1.isSignatureValid(v1Task, WebHookPayloads.TOKEN);
+    }
+
+    @Benchmark
+    public boolean v2HmacSha1() {
+        return v2.isSignatureValid(v2Sha1Task, WebHookPayloads.TOKEN);
+    }
+
+    @Benchmark
+    public boolean v2HmacSha256() {
+        return v2.isSignatureValid(v2Sha256Task, WebHookPayloads.TOKEN);
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * Minimal {@link HttpServletRequest} carrying a payload of {@link WebHookPayloads}, for the parts read by
+ * the helpers. Only blocking reads of the body are supported.
+ */
+final class SyntheticRequest {
+
+    private SyntheticRequest() { }
+
+    static HttpServletRequest of(final Map<String, String> headers, final byte[] payload) {
+        return (HttpServletRequest) Proxy.newProxyInstance(SyntheticRequest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                            case "getHeader":
+                                return headers.get((String) args[0]);
+                            case "getContentLength":
+                                return payload.length;
+                            case "getCharacterEncoding":
+                                return "UTF-8";
+                            case "getInputStream":
+                                return new PayloadInputStream(payload);
+                            case "toString":
+                                return "SyntheticRequest" + headers;
+                            default:
+                                return null;
+                        }
+                    }
+                });
+    }
+
+    private static final class PayloadInputStream extends ServletInputStream {
+        private final ByteArrayInputStream in;
+
+        PayloadInputStream(byte[] payload) {
+            this.in = new ByteArrayInputStream(payload);
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, len);
+        }
+
+        public boolean isFinished() {
+            return in.available() == 0;
+        }
+
+        public boolean isReady() {
+            return true;
+        }
+
+        public void setReadListener(ReadListener readListener) {
+            // the helpers never read asynchronously
+            throw new UnsupportedOperationException();
+        }
+    }
+}
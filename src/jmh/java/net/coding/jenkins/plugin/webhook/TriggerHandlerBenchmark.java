@@ -0,0 +1,94 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import com.google.common.collect.ImmutableMap;
+import hudson.model.Action;
+import hudson.model.Job;
+import net.coding.jenkins.plugin.bean.WebHookTask;
+import net.coding.jenkins.plugin.cause.CodingWebHookCause;
+import net.coding.jenkins.plugin.webhook.filter.BranchFilterConfig;
+import net.coding.jenkins.plugin.webhook.filter.BranchFilterFactory;
+import net.coding.jenkins.plugin.webhook.filter.BranchFilterType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handling of decoded deliveries, up to the creation of the build actions; the scheduling itself is stubbed out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TriggerHandlerBenchmark {
+
+    @Param({"1", "5000"})
+    public int commits;
+
+    private WebHookTask push;
+    private WebHookTask mergeRequest;
+    private TriggerHandler handler;
+    private volatile Action[] scheduled;
+
+    @Setup
+    public void setUp() throws IOException {
+        WebHookHelperV2 helper = new WebHookHelperV2();
+        push = helper.parseTaskFromRequest(SyntheticRequest.of(
+                ImmutableMap.of("X-Coding-Event", "push"), WebHookPayloads.v2Push(commits)));
+        mergeRequest = helper.parseTaskFromRequest(SyntheticRequest.of(
+                ImmutableMap.of("X-Coding-Event", "merge request"), WebHookPayloads.v2MergeRequest()));
+        BranchFilterConfig config = new BranchFilterConfig(BranchFilterType.NameBasedFilter,
+                "master, feature/*", "", "");
+        handler = new TriggerHandler(true, true, "create,synchronize",
+                BranchFilterFactory.newBranchFilter(config), 0, false, new TriggerHandler.BuildScheduler() {
+            @Override
+            public void scheduleBuild(Job<?, ?> job, int quietPeriod, Action[] actions) {
+                scheduled = actions;
+            }
+
+            @Override
+            public List<CodingWebHookCause> getWaitingCauses(Job<?, ?> job) {
+                return Collections.emptyList();
+            }
+        });
+    }
+
+    @Benchmark
+    public Action[] handlePush() {
+        handler.handle(null, push, true);
+        return scheduled;
+    }
+
+    @Benchmark
+    public Action[] handleMergeRequest() {
+        handler.handle(null, mergeRequest, true);
+        return scheduled;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import com.google.common.collect.ImmutableMap;
+import net.coding.jenkins.plugin.bean.WebHookTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and decoding of deliveries, from the request to the canonical model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WebHookParseBenchmark {
+
+    @Param({"1", "20", "500", "5000"})
+    public int commits;
+
+    private final WebHookHelperV1 v1 = new WebHookHelperV1();
+    private final WebHookHelperV2 v2 = new WebHookHelperV2();
+
+    private byte[] v1Push;
+    private byte[] v2Push;
+    private byte[] v2MergeRequest;
+    private Map<String, String> v1Headers;
+    private Map<String, String> v2PushHeaders;
+    private Map<String, String> v2MergeRequestHeaders;
+
+    @Setup
+    public void setUp() {
+        v1Push = WebHookPayloads.v1Push(commits);
+        v2Push = WebHookPayloads.v2Push(commits);
+        v2MergeRequest = WebHookPayloads.v2MergeRequest();
+        v1Headers = ImmutableMap.of("X-Coding-Event", "push");
+        v2PushHeaders = ImmutableMap.of(
+                "X-Coding-Event", "push",
+                "X-Coding-WebHook-Version", WebHookHelperV2.version,
+                "X-Coding-Signature", WebHookPayloads.sha1Signature(v2Push));
+        v2MergeRequestHeaders = ImmutableMap.of(
+                "X-Coding-Event", "merge request",
+                "X-Coding-WebHook-Version", WebHookHelperV2.version,
+                "X-Coding-Signature", WebHookPayloads.sha1Signature(v2MergeRequest));
+    }
+
+    /**
+     * Includes the conversion of the v1 model to the canonical one.
+     */
+    @Benchmark
+    public WebHookTask v1Push() throws IOException {
+        return v1.parseTaskFromRequest(SyntheticRequest.of(v1Headers, v1Push));
+    }
+
+    @Benchmark
+    public WebHookTask v2Push() throws IOException {
+        return v2.parseTaskFromRequest(SyntheticRequest.of(v2PushHeaders, v2Push));
+    }
+
+    @Benchmark
+    public WebHookTask v2MergeRequest() throws IOException {
+        return v2.parseTaskFromRequest(SyntheticRequest.of(v2MergeRequestHeaders, v2MergeRequest));
+    }
+}
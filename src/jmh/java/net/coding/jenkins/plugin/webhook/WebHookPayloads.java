@@ -0,0 +1,130 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import org.apache.commons.codec.digest.HmacUtils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Synthetic payloads with a given number of commits. They are generated rather than captured, following
+ * the fields and nesting of the deliveries Coding sends, so that their size can be scaled.
+ */
+final class WebHookPayloads {
+    static final String TOKEN = "7b3d2f0c9e";
+
+    private static final String SSH_URL = "git@e.coding.net:codingcorp/demo/demo.git";
+    private static final String HTTPS_URL = "https://e.coding.net/codingcorp/demo/demo.git";
+    private static final String WEB_URL = "https://codingcorp.coding.net/p/demo/d/demo/git";
+
+    private WebHookPayloads() { }
+
+    static byte[] v1Push(int commits) {
+        StringBuilder sb = new StringBuilder(256 + commits * 256);
+        sb.append("{\"ref\":\"refs/heads/master\",\"before\":\"").append(sha(0))
+                .append("\",\"after\":\"").append(sha(commits)).append("\",\"commits\":[");
+        for (int i = 1; i <= commits; i++) {
+            if (i > 1) {
+                sb.append(',');
+            }
+            sb.append("{\"sha\":\"").append(sha(i))
+                    .append("\",\"short_message\":\"Fix issue #").append(i)
+                    .append(" in the build\\n\",\"web_url\":\"").append(WEB_URL).append("/commit/").append(sha(i))
+                    .append("\",\"committer\":{\"name\":\"Developer\",\"email\":\"dev@coding.net\"}}");
+        }
+        sb.append("],\"repository\":{\"project_id\":\"1024\",\"ssh_url\":\"").append(SSH_URL)
+                .append("\",\"https_url\":\"").append(HTTPS_URL)
+                .append("\",\"git_url\":\"").append(HTTPS_URL)
+                .append("\",\"name\":\"demo\",\"description\":\"Demo project\",\"web_url\":\"")
+                .append("https://codingcorp.coding.net/p/demo\",\"owner\":").append(v1User())
+                .append("},\"event\":\"push\",\"token\":\"").append(TOKEN)
+                .append("\",\"user\":").append(v1User()).append('}');
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    static byte[] v2Push(int commits) {
+        StringBuilder sb = new StringBuilder(512 + commits * 512);
+        sb.append("{\"ref\":\"refs/heads/master\",\"before\":\"").append(sha(0))
+                .append("\",\"after\":\"").append(sha(commits)).append("\",\"created\":false,\"deleted\":false,")
+                .append("\"compare\":\"").append(WEB_URL).append("/compare/").append(sha(0)).append("...")
+                .append(sha(commits)).append("\",\"commits\":[");
+        for (int i = 1; i <= commits; i++) {
+            if (i > 1) {
+                sb.append(',');
+            }
+            sb.append(v2Commit(i));
+        }
+        sb.append("],\"head_commit\":").append(v2Commit(commits))
+                .append(",\"repository\":").append(v2Repository())
+                .append(",\"sender\":").append(v2User()).append('}');
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    static byte[] v2MergeRequest() {
+        String json = "{\"action\":\"synchronize\",\"number\":42,\"mergeRequest\":{\"id\":4242,\"number\":42," +
+                "\"title\":\"Add coalescing of pushes\",\"body\":\"Builds the newest head only\"," +
+                "\"state\":\"open\",\"html_url\":\"" + WEB_URL + "/merge/42\"," +
+                "\"merge_commit_sha\":\"" + sha(42) + "\",\"user\":" + v2User() + "," +
+                "\"head\":{\"ref\":\"feature/coalescing\",\"sha\":\"" + sha(41) + "\",\"repo\":" + v2Repository() + "}," +
+                "\"base\":{\"ref\":\"master\",\"sha\":\"" + sha(40) + "\",\"repo\":" + v2Repository() + "}," +
+                "\"comments\":3,\"commits\":7,\"additions\":120,\"deletions\":12,\"changed_files\":5}," +
+                "\"repository\":" + v2Repository() + ",\"sender\":" + v2User() + "}";
+        return json.getBytes(UTF_8);
+    }
+
+    static String sha1Signature(byte[] payload) {
+        return WebHookSignatures.SHA1_PREFIX + HmacUtils.hmacSha1Hex(TOKEN.getBytes(UTF_8), payload);
+    }
+
+    static String sha256Signature(byte[] payload) {
+        return WebHookSignatures.SHA256_PREFIX + HmacUtils.hmacSha256Hex(TOKEN.getBytes(UTF_8), payload);
+    }
+
+    private static String v2Commit(int i) {
+        return "{\"id\":\"" + sha(i) + "\",\"tree_id\":\"" + sha(i + 7) + "\",\"distinct\":true," +
+                "\"message\":\"Fix issue #" + i + " in the build\\n\\nSigned-off-by: Developer\"," +
+                "\"timestamp\":\"2020-06-01T12:00:00+08:00\",\"url\":\"" + WEB_URL + "/commit/" + sha(i) + "\"," +
+                "\"author\":{\"name\":\"Developer\",\"email\":\"dev@coding.net\",\"username\":\"dev\"}," +
+                "\"committer\":{\"name\":\"Developer\",\"email\":\"dev@coding.net\",\"username\":\"dev\"}," +
+                "\"added\":[],\"removed\":[],\"modified\":[\"src/main/java/Main.java\",\"README.md\"]}";
+    }
+
+    private static String v2Repository() {
+        return "{\"id\":1024,\"name\":\"demo\",\"full_name\":\"codingcorp/demo/demo\",\"owner\":" + v2User() + "," +
+                "\"private\":true,\"html_url\":\"" + WEB_URL + "\",\"description\":\"Demo project\",\"fork\":false," +
+                "\"url\":\"https://codingcorp.coding.net/open-api/repos/codingcorp/demo/demo\"," +
+                "\"clone_url\":\"" + HTTPS_URL + "\",\"ssh_url\":\"" + SSH_URL + "\",\"default_branch\":\"master\"}";
+    }
+
+    private static String v2User() {
+        return "{\"id\":8,\"login\":\"dev\",\"avatar_url\":\"https://coding-net-production-static.cos.ap-shanghai" +
+                ".myqcloud.com/avatar.png\",\"url\":\"https://codingcorp.coding.net/api/user/key/dev\"," +
+                "\"html_url\":\"https://codingcorp.coding.net/u/dev\",\"name\":\"Developer\",\"type\":\"USER\"}";
+    }
+
+    private static String v1User() {
+        return "{\"name\":\"Developer\",\"global_key\":\"dev\",\"path\":\"/u/dev\"," +
+                "\"avatar\":\"https://coding.net/static/avatar.png\",\"web_url\":\"https://coding.net/u/dev\"}";
+    }
+
+    private static String sha(int i) {
+        return String.format("%040x", i);
+    }
+}
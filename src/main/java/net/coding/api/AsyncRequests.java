@@ -0,0 +1,122 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the blocking API calls behind the {@code *Async} methods, like {@link Coding#getUserAsync(String)},
+ * on a pool shared by all {@link Coding} instances. Only the number of threads is bounded, calls beyond
+ * {@link #THREADS} wait in an unbounded queue.
+ *
+ * <p>
+ * The futures complete exceptionally with the {@link IOException} of the call, which {@link #await(Future)}
+ * rethrows as is.
+ */
+public final class AsyncRequests {
+    private static final String PROPERTY_PREFIX = AsyncRequests.class.getName();
+
+    /**
+     * Maximum number of API calls running concurrently, the others are queued.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int THREADS = Integer.getInteger(PROPERTY_PREFIX + ".threads", 8);
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(THREADS, THREADS,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Coding API async request " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private AsyncRequests() { }
+
+    /**
+     * Runs the call on the pool, as a {@link RateLimitHandler#inBackground(Callable) background} one if the
+     * calling thread is.
+     *
+     * <p>
+     * The {@link Error} the paging iterators wrap an {@link IOException} in completes the future with the
+     * {@link IOException} itself.
+     */
+    static <T> CompletableFuture<T> supply(final Callable<T> call) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final boolean background = RateLimitHandler.isBackground();
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    return; // cancelled while queued
+                }
+                try {
+                    future.complete(background ? RateLimitHandler.inBackground(call) : call.call());
+                } catch (Error e) {
+                    future.completeExceptionally(e.getCause() instanceof IOException ? e.getCause() : e);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Waits for the result of an asynchronous call.
+     *
+     * @throws IOException the failure of the call
+     */
+    public static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while waiting for a request").initCause(e);
+        } catch (ExecutionException e) {
+            throw Requester.unwrap(e);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breaker of an endpoint class of a server, like {@code user}, {@code repository} or
+ * {@code current_user}, shared by all {@link Coding} instances.
+ *
+ * <p>
+ * After {@link #FAILURE_THRESHOLD} consecutive server failures, that is network errors and {@code 5xx}
+ * responses, the circuit opens and requests to the endpoint class fail fast with a
+ * {@link CircuitOpenException} for {@link #OPEN_TIME} milliseconds. A single trial request is then let
+ * through, closing the circuit again if it succeeds. Client errors like {@code 404} or a non-zero
+ * {@code code} of the response prove that the server is up and count as successes.
+ *
+ * <p>
+ * The latencies of the last {@link #SAMPLES} successful requests are kept to derive the delay after
+ * which a hedged request is sent, see {@link CodingBuilder#withHedgedRequests(boolean)}.
+ */
+final class CircuitBreaker {
+    private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class.getName());
+
+    private static final String PROPERTY_PREFIX = CircuitBreaker.class.getName();
+
+    /**
+     * Number of consecutive failures opening the circuit, {@code 0} to disable the circuit breaker.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int FAILURE_THRESHOLD = Integer.getInteger(PROPERTY_PREFIX + ".failureThreshold", 5);
+
+    /**
+     * Time in milliseconds the circuit stays open before a trial request is let through.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static long OPEN_TIME = Long.getLong(PROPERTY_PREFIX + ".openTime", TimeUnit.SECONDS.toMillis(30));
+
+    /**
+     * Number of latencies kept to compute the percentile the hedging delay is based on.
+     */
+    static final int SAMPLES = 100;
+
+    /**
+     * Latencies needed before requests are hedged at all.
+     */
+    static final int MIN_SAMPLES = 20;
+
+    private static final ConcurrentMap<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+
+    private final long[] latencies = new long[SAMPLES];
+    private int next;
+    private int samples;
+    private long p95 = -1;
+
+    CircuitBreaker(String name) {
+        this.name = name;
+    }
+
+    static CircuitBreaker of(URL url) {
+        String key = url.getProtocol() + "://" + url.getAuthority() + " " + endpointClass(url);
+        CircuitBreaker breaker = BREAKERS.get(key);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(key);
+            breaker = BREAKERS.putIfAbsent(key, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    /**
+     * Classifies an API path, e.g. {@code /api/user/key/foo} as {@code user} and
+     * {@code /repos/foo/bar} as {@code repository}.
+     */
+    static String endpointClass(URL url) {
+        String[] segments = url.getPath().split("/");
+        int i = 0;
+        while (i < segments.length && (segments[i].isEmpty() || segments[i].equals("api"))) {
+            i++;
+        }
+        if (i == segments.length) {
+            return "";
+        }
+        for (int j = i; j < segments.length; j++) {
+            if (segments[j].equals("repos") || segments[j].equals("project")) {
+                return "repository";
+            }
+        }
+        String first = segments[i];
+        if (first.equals("users") || first.equals("account")) {
+            return "user";
+        }
+        return first;
+    }
+
+    /**
+     * Called before a request is sent.
+     *
+     * @throws CircuitOpenException if the circuit is open
+     */
+    void acquire(long now) throws CircuitOpenException {
+        if (FAILURE_THRESHOLD <= 0) {
+            return;
+        }
+        synchronized (this) {
+            switch (state) {
+                case CLOSED:
+                    return;
+                case OPEN:
+                    if (now - openedAt >= OPEN_TIME) {
+                        state = State.HALF_OPEN;
+                        return; // this one is the trial
+                    }
+                    break;
+                case HALF_OPEN:
+                    break; // the trial is still running
+            }
+        }
+        throw new CircuitOpenException("Circuit open for " + name + " after " + failures + " failures");
+    }
+
+    /**
+     * Called after a request that has been let through by {@link #acquire(long)}.
+     *
+     * @param healthy whether the server answered, see {@link #isServerFailure(IOException)}
+     * @param latency nanoseconds the request took
+     */
+    void release(boolean healthy, long latency, long now) {
+        synchronized (this) {
+            if (healthy) {
+                if (state != State.CLOSED) {
+                    LOGGER.log(Level.INFO, "Circuit closed for {0}", name);
+                }
+                state = State.CLOSED;
+                failures = 0;
+                record(TimeUnit.NANOSECONDS.toMillis(latency));
+                return;
+            }
+            failures++;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && FAILURE_THRESHOLD > 0 && failures >= FAILURE_THRESHOLD)) {
+                if (state == State.CLOSED) {
+                    LOGGER.log(Level.WARNING, "Circuit opened for {0} after {1} failures", new Object[] {name, failures});
+                }
+                state = State.OPEN;
+                openedAt = now;
+            }
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    private void record(long latency) {
+        latencies[next] = latency;
+        next = (next + 1) % SAMPLES;
+        if (samples < SAMPLES) {
+            samples++;
+        }
+        // sorting on every response isn't worth it, the percentile moves slowly
+        if (samples >= MIN_SAMPLES && next % 10 == 0) {
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            p95 = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+        }
+    }
+
+    /**
+     * @return the 95th percentile of the recent latencies in milliseconds, or {@code -1} if there aren't
+     *      enough of them yet
+     */
+    synchronized long getHedgeDelay() {
+        return p95;
+    }
+
+    /**
+     * Whether the exception tells that the server is unavailable, rather than that it rejected the request.
+     */
+    static boolean isServerFailure(IOException e) {
+        if (e instanceof FileNotFoundException || e instanceof CodingApiException) {
+            return false;
+        }
+        if (e instanceof HttpException) {
+            int code = ((HttpException) e).getResponseCode();
+            if (e.getCause() instanceof SocketTimeoutException) {
+                return true;
+            }
+            return code < 0 || code >= 500;
+        }
+        return true;
+    }
+}
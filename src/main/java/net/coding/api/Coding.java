@@ -39,9 +39,12 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -51,17 +54,26 @@ import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.NONE;
 public class Coding {
     /*package*/ final String login;
 
-    private final Map<String, CodingUser> users = new Hashtable<String, CodingUser>();
-    private final Map<String, CodingOrganization> orgs = new Hashtable<String, CodingOrganization>();
+    private final PersonCache personCache;
 
     private final String apiUrl;
     private HttpConnector connector = HttpConnector.DEFAULT;
+    private final ResponseCache responseCache;
+    private final RateLimitHandler rateLimitHandler;
+    private final boolean hedgedRequests;
     /*package*/ final String encodedAuthorization;
 
-    Coding(String apiUrl, String login, String oauthAccessToken, String password, HttpConnector connector) throws IOException {
+    Coding(String apiUrl, String login, String oauthAccessToken, String password, HttpConnector connector,
+           ResponseCache responseCache, RateLimitHandler rateLimitHandler, boolean hedgedRequests,
+           PersonCache personCache) throws IOException {
         if (apiUrl.endsWith("/")) apiUrl = apiUrl.substring(0, apiUrl.length() - 1); // normalize
         this.apiUrl = apiUrl;
         if (null != connector) this.connector = connector;
+        this.responseCache = responseCache;
+        this.rateLimitHandler = rateLimitHandler == null ? RateLimitHandler.WAIT : rateLimitHandler;
+        this.hedgedRequests = hedgedRequests;
+        this.personCache = personCache != null ? personCache
+                : new PersonCache(PersonCache.DEFAULT_SIZE, PersonCache.DEFAULT_TTL, TimeUnit.MINUTES);
 
         if (oauthAccessToken != null) {
             encodedAuthorization = oauthAccessToken;
@@ -104,10 +116,10 @@ public class Coding {
         CodingOrganization o = new CodingOrganization();
         o.global_key = "coding_dot_net";
         return o;
-//        CodingOrganization o = orgs.get(name);
+//        CodingOrganization o = personCache.getOrganization(name, this);
 //        if (o==null) {
 //            o = retrieve().to("/orgs/" + name, CodingOrganization.class).wrapUp(this);
-//            orgs.put(name,o);
+//            personCache.putOrganization(name, o);
 //        }
 //        return o;
     }
@@ -122,6 +134,15 @@ public class Coding {
         return retrieve().to("/repos/" + tokens[0] + '/' + tokens[1], CodingRepository.class).wrap(this);
     }
 
+    public CompletableFuture<CodingRepository> getRepositoryAsync(final String name) {
+        return AsyncRequests.supply(new Callable<CodingRepository>() {
+            @Override
+            public CodingRepository call() throws IOException {
+                return getRepository(name);
+            }
+        });
+    }
+
     /**
      * Gets complete map of organizations/teams that current user belongs to.
      *
@@ -152,18 +173,26 @@ public class Coding {
             LOGGER.log(Level.INFO, "ignore fetch user info for MANAGE_DOMAINS");
             return null;
         }
-        CodingUser u = users.get(login);
+        CodingUser u = personCache.getUser(login, this);
         if (u == null) {
             u = retrieve().to("/api/user/key/" + login, CodingUser.class);
             if (u == null) {
                 return null;
             }
             u.root = this;
-            users.put(u.getLogin(), u);
+            personCache.putUser(u);
         }
         return u;
     }
 
+    public CompletableFuture<CodingUser> getUserAsync(final String login) {
+        return AsyncRequests.supply(new Callable<CodingUser>() {
+            @Override
+            public CodingUser call() throws IOException {
+                return getUser(login);
+            }
+        });
+    }
 
     /**
      * Gets the {@link CodingUser} that represents yourself.
@@ -176,11 +205,41 @@ public class Coding {
         LOGGER.log(Level.FINE, "fetch current_user " + u);
 
         u.root = this;
-        users.put(u.getLogin(), u);
 
         return u;
     }
 
+    public CompletableFuture<CodingMyself> getMyselfAsync() {
+        return AsyncRequests.supply(new Callable<CodingMyself>() {
+            @Override
+            public CodingMyself call() throws IOException {
+                return getMyself();
+            }
+        });
+    }
+
+    /**
+     * Gets the e-mail addresses of yourself, without having to get {@link #getMyself()} first.
+     *
+     * @see CodingMyself#getEmails2()
+     */
+    public CompletableFuture<List<CodingEmail>> getMyEmailsAsync() {
+        return AsyncRequests.supply(new Callable<List<CodingEmail>>() {
+            @Override
+            public List<CodingEmail> call() throws IOException {
+                return getMyEmails();
+            }
+        });
+    }
+
+    /*package*/ List<CodingEmail> getMyEmails() throws IOException {
+        String fetchEmail = retrieve().to("/api/account/email", String.class);
+        CodingEmail codingEmail = new CodingEmail();
+        codingEmail.email = fetchEmail;
+        codingEmail.primary = true;
+        return Collections.unmodifiableList(Collections.singletonList(codingEmail));
+    }
+
     /*package*/ void requireCredential() {
         if (isAnonymous())
             throw new IllegalStateException("This operation requires a credential but none is given to the GitHub constructor");
@@ -202,6 +261,28 @@ public class Coding {
         return connector;
     }
 
+    /**
+     * @return the cache GET requests are revalidated against, {@code null} if responses aren't cached
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public RateLimitHandler getRateLimitHandler() {
+        return rateLimitHandler;
+    }
+
+    public boolean isHedgedRequests() {
+        return hedgedRequests;
+    }
+
+    /**
+     * @return the cache of the users and organizations looked up, which may be shared with other instances
+     */
+    public PersonCache getPersonCache() {
+        return personCache;
+    }
+
     /*package*/ URL getApiURL(String tailApiUrl) throws IOException {
         if (tailApiUrl.startsWith("/")) {
             return new URL(apiUrl + tailApiUrl);
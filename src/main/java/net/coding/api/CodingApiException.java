@@ -0,0 +1,61 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import java.io.IOException;
+
+/**
+ * Error reported by the Coding API in the response envelope, i.e. a non-zero {@code code},
+ * even though the HTTP request itself succeeded.
+ */
+public class CodingApiException extends IOException {
+
+    private final int code;
+    private final String apiMessage;
+    private final String url;
+
+    public CodingApiException(int code, String apiMessage, String url) {
+        super("Coding API returned code: " + code + ", message: '" + apiMessage + "' for URL: " + url);
+        this.code = code;
+        this.apiMessage = apiMessage;
+        this.url = url;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * The {@code msg} of the envelope, may be {@code null}.
+     */
+    public String getApiMessage() {
+        return apiMessage;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+}
@@ -38,6 +38,10 @@ public class CodingBuilder {
     /* private */ String oauthToken;
 
     private HttpConnector connector;
+    private ResponseCache responseCache;
+    private RateLimitHandler rateLimitHandler = RateLimitHandler.WAIT;
+    private boolean hedgedRequests;
+    private PersonCache personCache;
 
     public static CodingBuilder fromEnvironment() throws IOException {
         Properties props = new Properties();
@@ -80,7 +84,43 @@ public class CodingBuilder {
         return this;
     }
 
+    /**
+     * Revalidates GET requests against the given cache, which can be shared between instances.
+     */
+    public CodingBuilder withResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+        return this;
+    }
+
+    /**
+     * Sets how rate limited requests are handled, {@link RateLimitHandler#WAIT} by default.
+     */
+    public CodingBuilder withRateLimitHandler(RateLimitHandler handler) {
+        this.rateLimitHandler = handler;
+        return this;
+    }
+
+    /**
+     * Sends a second identical {@code GET} when the first one takes longer than 95% of the recent requests
+     * to the same endpoint, and takes whichever answers first. This trades some of the rate limit for
+     * lower tail latency, and is off by default.
+     */
+    public CodingBuilder withHedgedRequests(boolean hedgedRequests) {
+        this.hedgedRequests = hedgedRequests;
+        return this;
+    }
+
+    /**
+     * Sets the cache of users and organizations, which can be shared by the clients of a server.
+     * Each client gets its own one by default.
+     */
+    public CodingBuilder withPersonCache(PersonCache personCache) {
+        this.personCache = personCache;
+        return this;
+    }
+
     public Coding build() throws IOException {
-        return new Coding(endpoint, user, oauthToken, password, connector);
+        return new Coding(endpoint, user, oauthToken, password, connector, responseCache, rateLimitHandler,
+                hedgedRequests, personCache);
     }
 }
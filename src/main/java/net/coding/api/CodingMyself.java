@@ -128,7 +128,7 @@ public class CodingMyself extends CodingUser {
     public PagedIterable<CodingRepository> listRepositories(final int pageSize, final RepositoryListFilter repoType) {
         return new PagedIterable<CodingRepository>() {
             public PagedIterator<CodingRepository> _iterator(int pageSize) {
-                return new PagedIterator<CodingRepository>(root.retrieve().with("type",repoType).asIterator("/user/repos", CodingRepository[].class, pageSize)) {
+                return new PagedIterator<CodingRepository>(root.retrieve().with("type",repoType).asIterator("/user/repos", CodingRepository[].class, pageSize, getPrefetch())) {
                     @Override
                     protected void wrapUp(CodingRepository[] page) {
                         for (CodingRepository c : page)
@@ -150,12 +150,9 @@ public class CodingMyself extends CodingUser {
      *      Always non-null.
      */
     public List<CodingEmail> getEmails2() throws IOException {
-        String fetchEmail = root.retrieve().to("/api/account/email", String.class);
-        email = fetchEmail;
-        CodingEmail codingEmail = new CodingEmail();
-        codingEmail.email = fetchEmail;
-        codingEmail.primary = true;
-        return Collections.unmodifiableList(Collections.singletonList(codingEmail));
+        List<CodingEmail> emails = root.getMyEmails();
+        email = emails.get(0).getEmail();
+        return emails;
     }
 
 }
@@ -51,7 +51,7 @@ public class CodingOrganization extends CodingPerson {
     public PagedIterable<CodingTeam> listTeams() throws IOException {
         return new PagedIterable<CodingTeam>() {
             public PagedIterator<CodingTeam> _iterator(int pageSize) {
-                return new PagedIterator<CodingTeam>(root.retrieve().asIterator(String.format("/orgs/%s/teams", getLogin()), CodingTeam[].class, pageSize)) {
+                return new PagedIterator<CodingTeam>(root.retrieve().asIterator(String.format("/orgs/%s/teams", getLogin()), CodingTeam[].class, pageSize, getPrefetch())) {
                     @Override
                     protected void wrapUp(CodingTeam[] page) {
                         for (CodingTeam c : page)
@@ -29,8 +29,12 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.stream.Collector;
 
-public class CodingPerson extends CodingObject {
+public class CodingPerson extends CodingObject implements Cloneable {
 
     /*package almost final*/ Coding root;
 
@@ -52,6 +56,19 @@ public class CodingPerson extends CodingObject {
         return this;
     }
 
+    /**
+     * Shallow copy bound to another client, for entries of a shared {@link PersonCache}.
+     */
+    /*package*/ CodingPerson copyFor(Coding root) {
+        try {
+            CodingPerson copy = (CodingPerson) clone();
+            copy.root = root;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
     /**
      * Gets the e-mail address of the user.
      */
@@ -80,6 +97,24 @@ public class CodingPerson extends CodingObject {
         return listRepositories(30);
     }
 
+    /**
+     * Walks the repositories of {@link #listRepositories()} in the background, reducing them with the
+     * collector page by page, so that the whole listing is never held in memory unless the collector keeps it.
+     */
+    public <A, R> CompletableFuture<R> listRepositoriesAsync(final Collector<? super CodingRepository, A, R> collector) {
+        return AsyncRequests.supply(new Callable<R>() {
+            @Override
+            public R call() {
+                A container = collector.supplier().get();
+                BiConsumer<A, ? super CodingRepository> accumulator = collector.accumulator();
+                for (CodingRepository repository : listRepositories()) {
+                    accumulator.accept(container, repository);
+                }
+                return collector.finisher().apply(container);
+            }
+        });
+    }
+
     /**
      * Lists up all the repositories using the specified page size.
      *
@@ -90,7 +125,7 @@ public class CodingPerson extends CodingObject {
     public PagedIterable<CodingRepository> listRepositories(final int pageSize) {
         return new PagedIterable<CodingRepository>() {
             public PagedIterator<CodingRepository> _iterator(int pageSize) {
-                return new PagedIterator<CodingRepository>(root.retrieve().asIterator("/users/" + getLogin() + "/repos?per_page=" + pageSize, CodingRepository[].class, pageSize)) {
+                return new PagedIterator<CodingRepository>(root.retrieve().asIterator("/users/" + getLogin() + "/repos?per_page=" + pageSize, CodingRepository[].class, pageSize, getPrefetch())) {
                     @Override
                     protected void wrapUp(CodingRepository[] page) {
                         for (CodingRepository c : page)
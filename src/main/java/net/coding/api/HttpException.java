@@ -47,4 +47,19 @@ public class HttpException extends IOException {
     public HttpException(int responseCode, String responseMessage, @CheckForNull URL url, Throwable cause) {
         this(responseCode, responseMessage, url == null ? null : url.toString(), cause);
     }
+
+    /**
+     * @return the HTTP status code, or {@code -1} if no response was received
+     */
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    public String getResponseMessage() {
+        return responseMessage;
+    }
+
+    public String getUrl() {
+        return url;
+    }
 }
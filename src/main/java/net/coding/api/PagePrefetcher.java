@@ -0,0 +1,157 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches pages ahead of a {@link Requester.PagingIterator} when the URL of the following pages can be
+ * derived from the {@code page} parameter of the "next" link.
+ *
+ * <p>
+ * The number of pages fetched concurrently is capped per API host, so that a large listing does not
+ * take over the connections to a server. When no permit is available, the iterator simply fetches the
+ * page itself once it gets there.
+ */
+final class PagePrefetcher {
+    private static final String PROPERTY_PREFIX = PagePrefetcher.class.getName();
+
+    /**
+     * Number of pages fetched ahead of the consumer of a listing, {@code 0} to disable prefetching.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int PAGES = Integer.getInteger(PROPERTY_PREFIX + ".pages", 2);
+
+    /**
+     * Maximum number of pages fetched ahead concurrently per API host.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int CONCURRENCY = Integer.getInteger(PROPERTY_PREFIX + ".concurrency", 4);
+
+    private static final Pattern PAGE = Pattern.compile("([?&]page=)(\\d+)");
+
+    private static final ConcurrentMap<String, Semaphore> PERMITS = new ConcurrentHashMap<>();
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Coding API page prefetch " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private PagePrefetcher() { }
+
+    /**
+     * @return the page number of the URL, or {@code -1} if it has none
+     */
+    static int pageNumber(URL url) {
+        Matcher m = PAGE.matcher(url.toString());
+        return m.find() ? Integer.parseInt(m.group(2)) : -1;
+    }
+
+    static URL withPage(URL url, int page) throws MalformedURLException {
+        Matcher m = PAGE.matcher(url.toString());
+        if (!m.find()) {
+            throw new MalformedURLException("No page parameter in " + url);
+        }
+        return new URL(m.replaceFirst("$1" + page));
+    }
+
+    /**
+     * Submits a fetch if the host of the URL has a permit left.
+     *
+     * @return {@code null} if the concurrency cap of the host is reached
+     */
+    static <T> Future<T> trySubmit(URL url, final Callable<T> fetch) {
+        final Semaphore permits = permits(url.getHost());
+        if (!permits.tryAcquire()) {
+            return null;
+        }
+        // set by whichever of the fetch or the cancellation comes first, which then owns the permit
+        final AtomicBoolean claimed = new AtomicBoolean();
+        FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return fetch.call();
+                } finally {
+                    permits.release();
+                }
+            }
+        }) {
+            @Override
+            protected void done() {
+                // a page discarded before it was fetched; one discarded while being fetched keeps
+                // its permit until the request returns
+                if (claimed.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        };
+        try {
+            EXECUTOR.execute(task);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return task;
+    }
+
+    private static Semaphore permits(String host) {
+        Semaphore permits = PERMITS.get(host);
+        if (permits == null) {
+            Semaphore created = new Semaphore(Math.max(1, CONCURRENCY));
+            permits = PERMITS.putIfAbsent(host, created);
+            if (permits == null) {
+                permits = created;
+            }
+        }
+        return permits;
+    }
+}
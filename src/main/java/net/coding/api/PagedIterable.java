@@ -29,6 +29,10 @@ import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class PagedIterable<T> implements Iterable<T> {
     /**
@@ -36,6 +40,11 @@ public abstract class PagedIterable<T> implements Iterable<T> {
      */
     private int size = 0;
 
+    /**
+     * Number of pages fetched ahead, negative for {@link PagePrefetcher#PAGES}.
+     */
+    private int prefetch = -1;
+
     /**
      * Sets the pagination size.
      *
@@ -47,12 +56,32 @@ public abstract class PagedIterable<T> implements Iterable<T> {
         return this;
     }
 
+    /**
+     * Sets the number of pages fetched concurrently ahead of the iteration, {@code 0} to fetch them
+     * one by one as the iteration gets there.
+     */
+    public PagedIterable<T> withPrefetch(int pages) {
+        this.prefetch = pages;
+        return this;
+    }
+
+    protected int getPrefetch() {
+        return prefetch < 0 ? PagePrefetcher.PAGES : prefetch;
+    }
+
     public final PagedIterator<T> iterator() {
         return _iterator(size);
     }
 
     public abstract PagedIterator<T> _iterator(int pageSize);
 
+    /**
+     * Lazily walk {@link Iterable}, pages are only retrieved as the stream gets to them.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED), false);
+    }
+
     /**
      * Eagerly walk {@link Iterable} and return the result in a list.
      */
@@ -0,0 +1,116 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the users and organizations looked up by {@link Coding}, evicted by size and by age.
+ *
+ * <p>
+ * A cache can be shared by the {@link Coding} instances of one server, see
+ * {@link CodingBuilder#withPersonCache(PersonCache)}. Entries are then handed out as copies bound to the
+ * instance asking for them, so that nothing fetched later through an entry uses the credential of the
+ * instance that cached it. For the same reason, {@link CodingMyself} is never cached.
+ */
+public final class PersonCache {
+
+    /**
+     * Number of entries of the cache {@link Coding} uses when none is given.
+     */
+    public static final int DEFAULT_SIZE = 1000;
+
+    /**
+     * Minutes an entry of the cache {@link Coding} uses when none is given is kept.
+     */
+    public static final int DEFAULT_TTL = 60;
+
+    private final Cache<String, CodingPerson> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PersonCache(long maximumSize, long ttl, TimeUnit unit) {
+        entries = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl, unit).build();
+    }
+
+    /*package*/ CodingUser getUser(String login, Coding root) {
+        return (CodingUser) get("user:" + login, root);
+    }
+
+    /*package*/ void putUser(CodingUser user) {
+        if (!(user instanceof CodingMyself)) {
+            entries.put("user:" + user.getLogin(), user);
+        }
+    }
+
+    /*package*/ CodingOrganization getOrganization(String name, Coding root) {
+        return (CodingOrganization) get("org:" + name, root);
+    }
+
+    /*package*/ void putOrganization(String name, CodingOrganization organization) {
+        entries.put("org:" + name, organization);
+    }
+
+    private CodingPerson get(String key, Coding root) {
+        CodingPerson person = entries.getIfPresent(key);
+        if (person == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return person.root == root ? person : person.copyFor(root);
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    public long size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the share of lookups answered from the cache, {@code 1.0} if there was none
+     */
+    public double getHitRate() {
+        long hit = hits.get();
+        long total = hit + misses.get();
+        return total == 0 ? 1.0 : (double) hit / total;
+    }
+}
@@ -0,0 +1,351 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pluggable handling of the API rate limit, see {@link CodingBuilder#withRateLimitHandler(RateLimitHandler)}.
+ *
+ * <p>
+ * The {@code X-RateLimit-Limit}, {@code X-RateLimit-Remaining} and {@code X-RateLimit-Reset} headers of
+ * every response are tracked per server, shared by all {@link Coding} instances. A request is considered
+ * rate limited when it gets a {@code 429}, or a {@code 403} with no request remaining.
+ *
+ * <p>
+ * Requests made through {@link #inBackground(Callable)}, like pages fetched ahead of a listing, are
+ * background ones: {@link #ADAPTIVE} paces them once the remaining budget gets low, so that interactive
+ * requests are the last ones to be slowed down.
+ */
+public abstract class RateLimitHandler {
+    private static final Logger LOGGER = Logger.getLogger(RateLimitHandler.class.getName());
+
+    private static final String PROPERTY_PREFIX = RateLimitHandler.class.getName();
+
+    /**
+     * Number of retries of a rate limited request before giving up.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int MAX_RETRIES = Integer.getInteger(PROPERTY_PREFIX + ".maxRetries", 5);
+
+    /**
+     * Delay in milliseconds before the first retry when the server doesn't tell when to retry,
+     * doubled for every following one.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static long BACKOFF = Long.getLong(PROPERTY_PREFIX + ".backoff", 1000L);
+
+    /**
+     * Longest time in milliseconds a request is held back, by a retry or by pacing.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static long MAX_WAIT = Long.getLong(PROPERTY_PREFIX + ".maxWait", TimeUnit.MINUTES.toMillis(1));
+
+    /**
+     * Longest time in milliseconds {@link #ADAPTIVE} holds back an interactive request, which may be
+     * holding a request thread of Jenkins, e.g. for a permission check. It is given up on instead.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static long MAX_INTERACTIVE_WAIT = Long.getLong(PROPERTY_PREFIX + ".maxInteractiveWait", 2000L);
+
+    /**
+     * Share of the rate limit, in percent, below which {@link #ADAPTIVE} paces background requests.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int BACKGROUND_RESERVE = Integer.getInteger(PROPERTY_PREFIX + ".backgroundReserve", 20);
+
+    private static final ThreadLocal<Boolean> BACKGROUND = new ThreadLocal<>();
+
+    private static final ConcurrentMap<String, Budget> BUDGETS = new ConcurrentHashMap<>();
+
+    /**
+     * Called before a request is sent, may block to hold it back.
+     */
+    public void beforeRequest(URL url) throws IOException {
+    }
+
+    /**
+     * Called with every response, successful or not.
+     */
+    public void onResponse(HttpURLConnection uc) {
+        budget(uc.getURL()).update(uc);
+    }
+
+    /**
+     * Called when a request has been rate limited.
+     *
+     * @param attempt number of times the request has been rate limited so far
+     * @throws IOException to give up, the request is retried if this returns normally
+     */
+    public abstract void onError(IOException e, HttpURLConnection uc, int attempt) throws IOException;
+
+    /**
+     * Gives up at once.
+     */
+    public static final RateLimitHandler FAIL = new RateLimitHandler() {
+        @Override
+        public void onError(IOException e, HttpURLConnection uc, int attempt) throws IOException {
+            throw (IOException) new IOException("API rate limit reached for " + describe(uc.getURL())).initCause(e);
+        }
+    };
+
+    /**
+     * Waits until the limit is reset, or backs off exponentially if the server doesn't tell when,
+     * and retries up to {@link #MAX_RETRIES} times.
+     */
+    public static final RateLimitHandler WAIT = new RateLimitHandler() {
+        @Override
+        public void onError(IOException e, HttpURLConnection uc, int attempt) throws IOException {
+            retry(e, uc, attempt);
+        }
+    };
+
+    /**
+     * Like {@link #WAIT} for background requests, and also spreads them over the rest of the rate limit
+     * window once less than {@link #BACKGROUND_RESERVE} percent of it remain.
+     *
+     * <p>
+     * Interactive requests are only held back when nothing remains, and never for more than
+     * {@link #MAX_INTERACTIVE_WAIT} at a time. They are retried once at most, so that callers on request
+     * threads fail within a few seconds rather than pile up waiting for the limit to reset.
+     */
+    public static final RateLimitHandler ADAPTIVE = new RateLimitHandler() {
+        @Override
+        public void beforeRequest(URL url) throws IOException {
+            boolean background = isBackground();
+            long delay = budget(url).reserve(background);
+            if (delay <= 0) {
+                return;
+            }
+            if (!background && delay > MAX_INTERACTIVE_WAIT) {
+                throw new IOException("API rate limit reached for " + describe(url)
+                        + ", not holding back an interactive request for " + delay + "ms");
+            }
+            LOGGER.log(Level.FINE, "Holding back request to {0} for {1}ms", new Object[]{describe(url), delay});
+            sleep(Math.min(delay, MAX_WAIT));
+        }
+
+        @Override
+        public void onError(IOException e, HttpURLConnection uc, int attempt) throws IOException {
+            if (isBackground()) {
+                retry(e, uc, attempt);
+                return;
+            }
+            long delay = retryDelay(uc, attempt);
+            if (attempt > 1 || delay > MAX_INTERACTIVE_WAIT) {
+                throw (IOException) new IOException("API rate limit reached for " + describe(uc.getURL())
+                        + ", not retrying an interactive request in " + delay + "ms").initCause(e);
+            }
+            LOGGER.log(Level.INFO, "API rate limit reached for {0}, retrying in {1}ms", new Object[]{describe(uc.getURL()), delay});
+            sleep(delay);
+        }
+    };
+
+    /**
+     * Runs API calls as background ones.
+     */
+    public static <T> T inBackground(Callable<T> callable) throws Exception {
+        Boolean previous = BACKGROUND.get();
+        BACKGROUND.set(Boolean.TRUE);
+        try {
+            return callable.call();
+        } finally {
+            BACKGROUND.set(previous);
+        }
+    }
+
+    public static boolean isBackground() {
+        return Boolean.TRUE.equals(BACKGROUND.get());
+    }
+
+    /*package*/ static boolean isRateLimited(HttpURLConnection uc, int responseCode) {
+        if (responseCode == 429) {
+            return true;
+        }
+        return responseCode == HttpURLConnection.HTTP_FORBIDDEN && "0".equals(uc.getHeaderField("X-RateLimit-Remaining"));
+    }
+
+    private static void retry(IOException e, HttpURLConnection uc, int attempt) throws IOException {
+        if (attempt > MAX_RETRIES) {
+            throw (IOException) new IOException("API rate limit reached for " + describe(uc.getURL())
+                    + ", gave up after " + MAX_RETRIES + " retries").initCause(e);
+        }
+        long delay = retryDelay(uc, attempt);
+        LOGGER.log(Level.INFO, "API rate limit reached for {0}, retrying in {1}ms", new Object[]{describe(uc.getURL()), delay});
+        sleep(delay);
+    }
+
+    private static long retryDelay(HttpURLConnection uc, int attempt) {
+        long delay = serverDelay(uc);
+        if (delay <= 0) {
+            long backoff = BACKOFF << Math.min(attempt - 1, 16);
+            // jitter, so that requests limited together are not retried together
+            delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        }
+        return Math.min(delay, MAX_WAIT);
+    }
+
+    /**
+     * @return the delay the server asks for with {@code Retry-After} or {@code X-RateLimit-Reset}, or
+     *      {@code 0} if it doesn't
+     */
+    private static long serverDelay(HttpURLConnection uc) {
+        long retryAfter = parseLong(uc.getHeaderField("Retry-After"));
+        if (retryAfter > 0) {
+            return TimeUnit.SECONDS.toMillis(retryAfter);
+        }
+        long reset = resetTime(parseLong(uc.getHeaderField("X-RateLimit-Reset")));
+        return reset > 0 ? reset - System.currentTimeMillis() : 0;
+    }
+
+    /**
+     * @param reset epoch seconds, or seconds from now for small values
+     * @return the reset time in epoch milliseconds, {@code -1} if unknown
+     */
+    private static long resetTime(long reset) {
+        if (reset < 0) {
+            return -1;
+        }
+        long millis = TimeUnit.SECONDS.toMillis(reset);
+        return reset > 1000000000L ? millis : System.currentTimeMillis() + millis;
+    }
+
+    /**
+     * The URL without its query, which carries the access token.
+     */
+    private static String describe(URL url) {
+        return url.getProtocol() + "://" + url.getAuthority() + url.getPath();
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while waiting for the API rate limit").initCause(e);
+        }
+    }
+
+    private static Budget budget(URL url) {
+        String key = url.getProtocol() + "://" + url.getAuthority();
+        Budget budget = BUDGETS.get(key);
+        if (budget == null) {
+            Budget created = new Budget();
+            budget = BUDGETS.putIfAbsent(key, created);
+            if (budget == null) {
+                budget = created;
+            }
+        }
+        return budget;
+    }
+
+    /**
+     * Rate limit of a server as last reported, with a token bucket pacing the background requests
+     * once it runs low.
+     */
+    /*package*/ static final class Budget {
+        private long limit = -1;
+        private long remaining = -1;
+        private long resetAt;
+        private double tokens;
+        private double rate;
+        private long refilledAt;
+
+        synchronized void update(HttpURLConnection uc) {
+            long remaining = parseLong(uc.getHeaderField("X-RateLimit-Remaining"));
+            long resetAt = resetTime(parseLong(uc.getHeaderField("X-RateLimit-Reset")));
+            if (remaining < 0 || resetAt < 0) {
+                return;
+            }
+            update(parseLong(uc.getHeaderField("X-RateLimit-Limit")), remaining, resetAt, System.currentTimeMillis());
+        }
+
+        synchronized void update(long limit, long remaining, long resetAt, long now) {
+            this.limit = Math.max(limit, remaining);
+            this.remaining = remaining;
+            this.resetAt = resetAt;
+            // spread what remains evenly over the rest of the window
+            this.rate = (double) remaining / Math.max(1, resetAt - now);
+            this.tokens = Math.min(tokens, 1);
+            this.refilledAt = now;
+        }
+
+        /**
+         * Takes a request from the budget.
+         *
+         * @return how long the request should be held back in milliseconds
+         */
+        synchronized long reserve(boolean background) {
+            return reserve(background, System.currentTimeMillis());
+        }
+
+        synchronized long reserve(boolean background, long now) {
+            if (remaining < 0 || now >= resetAt) {
+                return 0; // unknown, or reset since
+            }
+            if (!background || remaining > limit * BACKGROUND_RESERVE / 100) {
+                if (remaining > 0) {
+                    remaining--;
+                    return 0;
+                }
+                return resetAt - now;
+            }
+            tokens = Math.min(1, tokens + (now - refilledAt) * rate);
+            refilledAt = now;
+            tokens--;
+            if (remaining > 0) {
+                remaining--;
+            }
+            if (tokens >= 0) {
+                return 0;
+            }
+            return rate > 0 ? (long) Math.ceil(-tokens / rate) : resetAt - now;
+        }
+    }
+}
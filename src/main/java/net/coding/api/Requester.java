@@ -25,10 +25,10 @@
  */
 package net.coding.api;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonMappingException;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonSyntaxException;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.commons.io.IOUtils;
 
@@ -36,7 +36,7 @@ import javax.annotation.WillClose;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Array;
@@ -46,8 +46,10 @@ import java.net.MalformedURLException;
 import java.net.ProtocolException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -55,10 +57,11 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
 
 import static java.util.Arrays.asList;
@@ -82,6 +85,22 @@ public class Requester {
      */
     private HttpURLConnection uc;
 
+    /**
+     * Key and cached entry the current request revalidates, if any.
+     */
+    private String cacheKey;
+    private ResponseCache.Entry cached;
+
+    /**
+     * Pagination "Link" header of the current response.
+     */
+    private String link;
+
+    /**
+     * Number of times the current request has been rate limited.
+     */
+    private int attempts;
+
     private static class Entry {
         String key;
         Object value;
@@ -115,9 +134,9 @@ public class Requester {
     /**
      * Loads pagenated resources.
      *
-     * Every iterator call reports a new batch.
+     * Every iterator call reports a new batch, up to {@code prefetch} batches are fetched ahead of the caller.
      */
-    /*package*/ <T> Iterator<T> asIterator(String tailApiUrl, Class<T> type, int pageSize) {
+    /*package*/ <T> Iterator<T> asIterator(String tailApiUrl, Class<T> type, int pageSize, int prefetch) {
         method("GET");
 
         if (pageSize!=0)
@@ -125,7 +144,7 @@ public class Requester {
 
         StringBuilder s = new StringBuilder(tailApiUrl);
         if (!args.isEmpty()) {
-            boolean first = true;
+            boolean first = tailApiUrl.indexOf('?') == -1;
             try {
                 for (Entry a : args) {
                     s.append(first ? '?' : '&');
@@ -140,16 +159,36 @@ public class Requester {
         }
 
         try {
-            return new PagingIterator<T>(type, root.getApiURL(s.toString()));
+            return new PagingIterator<T>(type, withAccessToken(root.getApiURL(s.toString())), prefetch);
         } catch (IOException e) {
             throw new Error(e);
         }
     }
 
+    /**
+     * Lazily walks the pages of a listing by following the "next" links, so the caller can stop at any point.
+     *
+     * <p>
+     * When the next link carries a {@code page} parameter, up to {@code prefetch} following pages are
+     * fetched concurrently, each with its own {@link Requester}, within the per host cap of
+     * {@link PagePrefetcher}.
+     */
     class PagingIterator<T> implements Iterator<T> {
 
         private final Class<T> type;
 
+        private final int prefetch;
+
+        /**
+         * Pages being fetched ahead, in order, the first one being the page of {@link #url}.
+         */
+        private final Deque<Future<Page<T>>> ahead = new ArrayDeque<>();
+
+        /**
+         * Page number of the last page in {@link #ahead}.
+         */
+        private int lastAhead;
+
         /**
          * The next batch to be returned from {@link #next()}.
          */
@@ -160,9 +199,10 @@ public class Requester {
          */
         private URL url;
 
-        PagingIterator(Class<T> type, URL url) {
+        PagingIterator(Class<T> type, URL url, int prefetch) {
             this.url = url;
             this.type = type;
+            this.prefetch = prefetch;
         }
 
         public boolean hasNext() {
@@ -186,43 +226,212 @@ public class Requester {
             if (next!=null) return; // already fetched
             if (url==null)  return; // no more data to fetch
 
+            Page<T> page;
             try {
-                while (true) {// loop while API rate limit is hit
-                    setupConnection(url);
-                    try {
-                        next = parse(type,null);
-                        assert next!=null;
-                        findNextURL();
-                        return;
-                    } catch (IOException e) {
-                        handleApiError(e);
-                    }
-                }
+                Future<Page<T>> f = ahead.poll();
+                page = f != null ? await(f) : fetchPageShared(url, type);
             } catch (IOException e) {
+                discardAhead();
                 throw new Error(e);
             }
+            next = page.items;
+            assert next!=null;
+            url = page.next;
+            if (url == null) {
+                // the pages fetched ahead are past the end
+                discardAhead();
+            } else {
+                fetchAhead();
+            }
         }
 
-        /**
-         * Locate the next page from the pagination "Link" tag.
-         */
-        private void findNextURL() throws MalformedURLException {
-            url = null; // start defensively
-            String link = uc.getHeaderField("Link");
-            if (link==null) return;
-
-            for (String token : link.split(", ")) {
-                if (token.endsWith("rel=\"next\"")) {
-                    // found the next page. This should look something like
-                    // <https://api.github.com/repos?page=3&per_page=100>; rel="next"
-                    int idx = token.indexOf('>');
-                    url = new URL(token.substring(1,idx));
-                    return;
+        private Page<T> await(Future<Page<T>> f) throws IOException {
+            try {
+                return f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw (IOException) new InterruptedIOException("Interrupted while fetching " + url).initCause(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Failed to fetch " + url, cause);
+            }
+        }
+
+        private void fetchAhead() {
+            if (prefetch <= 0) return;
+            int page = PagePrefetcher.pageNumber(url);
+            if (page < 0) return; // not predictable, follow the links one by one
+            if (ahead.isEmpty()) {
+                lastAhead = page - 1;
+            }
+            try {
+                while (ahead.size() < prefetch) {
+                    final URL pageUrl = PagePrefetcher.withPage(url, lastAhead + 1);
+                    Future<Page<T>> f = PagePrefetcher.trySubmit(pageUrl, new Callable<Page<T>>() {
+                        @Override
+                        public Page<T> call() throws Exception {
+                            // speculative, so it yields to the requests someone is waiting for
+                            return RateLimitHandler.inBackground(new Callable<Page<T>>() {
+                                @Override
+                                public Page<T> call() throws IOException {
+                                    return new Requester(root).method("GET").fetchPageShared(pageUrl, type);
+                                }
+                            });
+                        }
+                    });
+                    if (f == null) return; // fetched by this iterator once it gets there
+                    ahead.add(f);
+                    lastAhead++;
+                }
+            } catch (MalformedURLException e) {
+                LOGGER.log(Level.FINE, "Not prefetching pages of " + url, e);
+            }
+        }
+
+        private void discardAhead() {
+            for (Future<Page<T>> f : ahead) {
+                f.cancel(false);
+            }
+            ahead.clear();
+        }
+    }
+
+    /**
+     * A page of a listing and the URL of the page after it.
+     */
+    private static final class Page<T> {
+        final T items;
+        final URL next;
+
+        Page(T items, URL next) {
+            this.items = items;
+            this.next = next;
+        }
+    }
+
+    private <T> Page<T> fetchPage(URL url, Class<T> type) throws IOException {
+        attempts = 0;
+        while (true) {// loop while API rate limit is hit
+            try {
+                T items = exchange(url, type, null);
+                return new Page<T>(items, findNextURL());
+            } catch (CircuitOpenException e) {
+                Page<T> page = stalePage(url, type);
+                if (page == null) {
+                    throw e;
                 }
+                return page;
+            } catch (IOException e) {
+                handleApiError(e);
+            }
+        }
+    }
+
+    /**
+     * Fetches the page, or waits for the identical request another thread has in flight and shares its result.
+     * Requests are identical when they are for the same URL, type and credential, and both or neither are
+     * {@link RateLimitHandler#inBackground(Callable) background} ones, so that no one waits behind a paced request,
+     * and come from the same root, as the items get wired to it.
+     */
+    private <T> Page<T> fetchPageShared(final URL url, final Class<T> type) throws IOException {
+        String key = (type == null ? "" : type.getName()) + '\n' + RateLimitHandler.isBackground() + '\n'
+                + ResponseCache.key(url.toString(), root.encodedAuthorization);
+        return SingleFlight.call(root, key, new Callable<Page<T>>() {
+            @Override
+            public Page<T> call() throws IOException {
+                return root.isHedgedRequests() ? fetchPageHedged(url, type) : fetchPage(url, type);
+            }
+        });
+    }
+
+    /**
+     * Sends a {@code GET} for the page, hedged by a second one once it takes longer than most recent
+     * requests to the endpoint, see {@link CodingBuilder#withHedgedRequests(boolean)}.
+     */
+    private <T> Page<T> fetchPageHedged(final URL url, final Class<T> type) throws IOException {
+        CircuitBreaker breaker = CircuitBreaker.of(url);
+        long delay = breaker.getHedgeDelay();
+        if (delay < 0 || breaker.isOpen() || RateLimitHandler.isBackground()) {
+            return fetchPage(url, type);
+        }
+        return HedgedRequest.call(new Callable<Page<T>>() {
+            @Override
+            public Page<T> call() throws IOException {
+                Requester r = new Requester(root).method("GET");
+                r.headers.putAll(headers);
+                return r.fetchPage(url, type);
+            }
+        }, delay);
+    }
+
+    /**
+     * Sends the request and parses the response, guarded by the {@link CircuitBreaker} of the endpoint.
+     */
+    private <T> T exchange(URL url, Class<T> type, T instance) throws IOException {
+        CircuitBreaker breaker = CircuitBreaker.of(url);
+        breaker.acquire(System.currentTimeMillis());
+        long start = System.nanoTime();
+        boolean healthy = true;
+        try {
+            setupConnection(url);
+            buildRequest();
+            return parse(type, instance);
+        } catch (IOException e) {
+            healthy = !CircuitBreaker.isServerFailure(e);
+            throw e;
+        } finally {
+            breaker.release(healthy, System.nanoTime() - start, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Answers a {@code GET} from the response cache while the server is unavailable.
+     *
+     * @return {@code null} if the response isn't cached
+     */
+    private <T> Page<T> stalePage(URL url, Class<T> type) throws IOException {
+        ResponseCache cache = root.getResponseCache();
+        if (cache == null) {
+            return null;
+        }
+        ResponseCache.Entry entry = cache.getStale(ResponseCache.key(url.toString(), root.encodedAuthorization));
+        if (entry == null) {
+            return null;
+        }
+        LOGGER.log(Level.FINE, "Serving a stale response for {0}", url.getPath());
+        link = entry.getLink();
+        // the following pages are served from the cache too, as long as the circuit stays open
+        return new Page<T>(readResult(entry.open(), type, null, url.toString()), findNextURL());
+    }
+
+    /**
+     * Locate the next page from the pagination "Link" tag.
+     */
+    private URL findNextURL() throws IOException {
+        if (link==null) return null;
+
+        for (String token : link.split(", ")) {
+            if (token.endsWith("rel=\"next\"")) {
+                // found the next page. This should look something like
+                // <https://api.github.com/repos?page=3&per_page=100>; rel="next"
+                int idx = token.indexOf('>');
+                return withAccessToken(root.getApiURL(token.substring(1,idx)));
             }
+        }
+
+        // no more "next" link. we are done.
+        return null;
+    }
 
-            // no more "next" link. we are done.
+    private URL withAccessToken(URL url) throws MalformedURLException {
+        String s = url.toString();
+        if (root.encodedAuthorization == null || s.contains("access_token=")) {
+            return url;
         }
+        return new URL(s + (url.getQuery() == null ? '?' : '&') + "access_token=" + root.encodedAuthorization);
     }
 
     /**
@@ -255,42 +464,67 @@ public class Requester {
         tailApiUrl += questionMarkFound ? '&' : '?';
         tailApiUrl += "access_token=" + root.encodedAuthorization;
 
-        while (true) {// loop while API rate limit is hit
-            setupConnection(root.getApiURL(tailApiUrl));
-
-            buildRequest();
+        URL url = root.getApiURL(tailApiUrl);
+        if ("GET".equals(method) && instance == null) {
+            Page<T> page = fetchPageShared(url, type);
+            T result = page.items;
+            if (type != null && type.isArray() && page.next != null) {
+                result = concat(type, result, new PagingIterator<T>(type, page.next, PagePrefetcher.PAGES));
+            }
+            return result;
+        }
 
+        attempts = 0;
+        while (true) {// loop while API rate limit is hit
             try {
-                T result = parse(type, instance);
-                if (type != null && type.isArray()) { // we might have to loop for pagination - done through recursion
-                    final String links = uc.getHeaderField("link");
-                    if (links != null && links.contains("rel=\"next\"")) {
-                        Pattern nextLinkPattern = Pattern.compile(".*<(.*)>; rel=\"next\"");
-                        Matcher nextLinkMatcher = nextLinkPattern.matcher(links);
-                        if (nextLinkMatcher.find()) {
-                            final String link = nextLinkMatcher.group(1);
-                            T nextResult = _to(link, type, instance);
-
-                            final int resultLength = Array.getLength(result);
-                            final int nextResultLength = Array.getLength(nextResult);
-                            T concatResult = (T) Array.newInstance(type.getComponentType(), resultLength + nextResultLength);
-                            System.arraycopy(result, 0, concatResult, 0, resultLength);
-                            System.arraycopy(nextResult, 0, concatResult, resultLength, nextResultLength);
-                            result = concatResult;
-                        }
-                    }
-                }
-                return result;
+                return exchange(url, type, instance);
+            } catch (CircuitOpenException e) {
+                throw e;
             } catch (IOException e) {
                 handleApiError(e);
-            } catch (JsonSyntaxException e) {
-                String msg = "not json response for api " + uc.getURL();
-                LOGGER.log(Level.WARNING, msg, e);
-                throw new IOException(msg, e);
             }
         }
     }
 
+    /**
+     * Appends the remaining pages to the first one, copying every element only once.
+     */
+    private static <T> T concat(Class<T> type, T first, Iterator<T> rest) {
+        List<T> pages = new ArrayList<>();
+        pages.add(first);
+        int length = Array.getLength(first);
+        while (rest.hasNext()) {
+            T page = rest.next();
+            pages.add(page);
+            length += Array.getLength(page);
+        }
+        T result = type.cast(Array.newInstance(type.getComponentType(), length));
+        int pos = 0;
+        for (T page : pages) {
+            int pageLength = Array.getLength(page);
+            System.arraycopy(page, 0, result, pos, pageLength);
+            pos += pageLength;
+        }
+        return result;
+    }
+
+    /**
+     * @return the cause of the failure of a request run in another thread
+     */
+    /*package*/ static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
     /**
      * Handle API error by either throwing it or by returning normally to retry.
      */
@@ -309,6 +543,11 @@ public class Requester {
         if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) // 401 / Unauthorized == bad creds
             throw e;
 
+        if (RateLimitHandler.isRateLimited(uc, responseCode)) {
+            root.getRateLimitHandler().onError(e, uc, ++attempts);
+            return;
+        }
+
         InputStream es = wrapStream(uc.getErrorStream());
         try {
             if (es!=null) {
@@ -325,63 +564,95 @@ public class Requester {
     }
 
     private <T> T parse(Class<T> type, T instance) throws IOException {
-        InputStreamReader r = null;
+        InputStream in = null;
         int responseCode = -1;
         String responseMessage = null;
         try {
             responseCode = uc.getResponseCode();
             responseMessage = uc.getResponseMessage();
+            root.getRateLimitHandler().onResponse(uc);
+            link = uc.getHeaderField("Link");
             if (responseCode == 304) {
-                return null;    // special case handling for 304 unmodified, as the content will be ""
+                if (cached == null) {
+                    return null;    // special case handling for 304 unmodified, as the content will be ""
+                }
+                root.getResponseCache().hit();
+                link = cached.getLink();
+                return readResult(cached.open(), type, instance, uc.getURL().toString());
             }
             if (responseCode == 204 && type!=null && type.isArray()) {
                 // no content
                 return type.cast(Array.newInstance(type.getComponentType(),0));
             }
 
-            r = new InputStreamReader(wrapStream(uc.getInputStream()), "UTF-8");
-            String data = IOUtils.toString(r);
-            LOGGER.log(Level.FINEST, "api " + uc.getURL() + " reads " + data);
-            if (type!=null)
-                try {
-                    CodingResult codingResult = new GsonBuilder().create().fromJson(data, CodingResult.class);
-                    Integer code = codingResult.code;
-                    if (code != 0) {
-                        LOGGER.log(Level.WARNING, "api fails for " + uc.getURL().toString() + " coding code is " + code);
-                        return null;
-                    }
-                    return MAPPER.readValue(new GsonBuilder().create().toJson(codingResult.data), type);
-                } catch (JsonMappingException e) {
-                    throw (IOException)new IOException("Failed to deserialize " +data).initCause(e);
-                }
-            if (instance!=null)
-                try {
-                    CodingResult codingResult = new GsonBuilder().create().fromJson(data, CodingResult.class);
-                    Integer code = codingResult.code;
-                    if (code != 0) {
-                        LOGGER.log(Level.WARNING, "api fails for " + uc.getURL().toString() + " coding code is " + code);
-                        return null;
-                    }
-                    return MAPPER.readerForUpdating(instance).<T>readValue(new GsonBuilder().create().toJson(codingResult.data));
-                } catch (JsonMappingException e) {
-                    throw (IOException)new IOException("Failed to deserialize " +data).initCause(e);
+            in = wrapStream(uc.getInputStream());
+            if (cacheKey != null) {
+                String etag = uc.getHeaderField("ETag");
+                String lastModified = uc.getHeaderField("Last-Modified");
+                if (etag != null || lastModified != null) {
+                    byte[] body = IOUtils.toByteArray(in);
+                    in = root.getResponseCache().put(cacheKey, etag, lastModified, link, body).open();
                 }
-
-            return null;
-        } catch (FileNotFoundException e) {
+            }
+            return readResult(in, type, instance, uc.getURL().toString());
+        } catch (FileNotFoundException | CodingApiException e) {
             // java.net.URLConnection handles 404 exception has FileNotFoundException, don't wrap exception in HttpException
             // to preserve backward compatibility
             throw e;
         } catch (IOException e) {
             throw new HttpException(responseCode, responseMessage, uc.getURL(), e);
         } finally {
-            IOUtils.closeQuietly(r);
+            IOUtils.closeQuietly(in);
         }
     }
 
-    private static class CodingResult {
-        Integer code;
-        JsonElement data;
+    /**
+     * Reads the {@code {"code": 0, "data": ..., "msg": ...}} envelope of the Coding API in a single
+     * streaming pass, binding {@code data} directly into the given type or instance.
+     *
+     * @throws CodingApiException
+     *      if {@code code} is not zero.
+     */
+    /*package*/ static <T> T readResult(InputStream in, Class<T> type, T instance, String url) throws IOException {
+        Integer code = null;
+        String msg = null;
+        T result = null;
+        try (JsonParser parser = MAPPER.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("not json response for api " + url);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("code".equals(field)) {
+                    code = value == JsonToken.VALUE_NULL ? null : parser.getValueAsInt();
+                } else if ("msg".equals(field)) {
+                    // either a plain string or an object like {"user_not_login": "..."}
+                    msg = value.isScalarValue() ? parser.getValueAsString() : MAPPER.readTree(parser).toString();
+                } else if ("data".equals(field) && (code == null || code == 0) && value != JsonToken.VALUE_NULL) {
+                    if (type != null) {
+                        result = MAPPER.readValue(parser, type);
+                    } else if (instance != null) {
+                        result = MAPPER.readerForUpdating(instance).readValue(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (JsonParseException e) {
+            String message = "not json response for api " + url;
+            LOGGER.log(Level.WARNING, message, e);
+            throw new IOException(message, e);
+        } catch (JsonMappingException e) {
+            throw new IOException("Failed to deserialize response of " + url, e);
+        }
+        if (code == null || code != 0) {
+            LOGGER.log(Level.WARNING, "api fails for " + url + " coding code is " + code);
+            throw new CodingApiException(code == null ? -1 : code, msg, url);
+        }
+        return result;
     }
 
     /**
@@ -396,6 +667,7 @@ public class Requester {
     }
 
     private void setupConnection(URL url) throws IOException {
+        root.getRateLimitHandler().beforeRequest(url);
         uc = root.getConnector().connect(url);
 
         // if the authentication is needed but no credential is given, try it anyway (so that some calls
@@ -413,6 +685,20 @@ public class Requester {
 
         setRequestMethod(uc);
         uc.setRequestProperty("Accept-Encoding", "gzip");
+
+        cacheKey = null;
+        cached = null;
+        ResponseCache cache = root.getResponseCache();
+        if (cache != null && "GET".equals(method)) {
+            cacheKey = ResponseCache.key(url.toString(), root.encodedAuthorization);
+            cached = cache.get(cacheKey);
+            if (cached != null) {
+                if (cached.getEtag() != null)
+                    uc.setRequestProperty("If-None-Match", cached.getEtag());
+                if (cached.getLastModified() != null)
+                    uc.setRequestProperty("If-Modified-Since", cached.getLastModified());
+            }
+        }
     }
 
     private void setRequestMethod(HttpURLConnection uc) throws IOException {
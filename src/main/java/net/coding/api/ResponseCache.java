@@ -0,0 +1,286 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded cache of API responses, revalidated with {@code If-None-Match} and {@code If-Modified-Since}
+ * so that an unchanged resource costs a {@code 304} without body instead of the full JSON.
+ *
+ * <p>
+ * Only responses of {@code GET} requests carrying an {@code ETag} or {@code Last-Modified} header are
+ * kept. They are keyed by a digest of the URL and the credential, so that neither the token nor the
+ * responses of one user are ever visible to another. Entries are held in memory up to a total body size,
+ * least recently used first out, and written to the optional directory, to be picked up again after a
+ * restart.
+ */
+public final class ResponseCache {
+    private static final Logger LOGGER = Logger.getLogger(ResponseCache.class.getName());
+
+    private final long maxBytes;
+    private final File directory;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+
+    /**
+     * @param maxBytes total size of the bodies kept
+     * @param directory where entries are written, {@code null} to keep them in memory only
+     */
+    public ResponseCache(long maxBytes, File directory) {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+    }
+
+    /**
+     * A cached response body and the validators it was served with.
+     */
+    public static final class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final String link;
+        private final byte[] body;
+
+        Entry(String etag, String lastModified, String link, byte[] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.link = link;
+            this.body = body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * The pagination "Link" header, which a {@code 304} doesn't repeat.
+         */
+        public String getLink() {
+            return link;
+        }
+
+        InputStream open() {
+            return new ByteArrayInputStream(body);
+        }
+    }
+
+    /*package*/ static String key(String url, String authorization) {
+        return DigestUtils.sha256Hex(url + '\n' + (authorization == null ? "" : authorization));
+    }
+
+    /**
+     * Looks up the entry to revalidate a request with.
+     */
+    /*package*/ Entry get(String key) {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            revalidations.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Looks up the entry to answer a request with, without revalidating it, when the server can't be
+     * reached.
+     */
+    /*package*/ Entry getStale(String key) {
+        Entry entry = lookup(key);
+        if (entry != null) {
+            stale.incrementAndGet();
+        }
+        return entry;
+    }
+
+    private Entry lookup(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null && directory != null) {
+            entry = read(key);
+            if (entry != null) {
+                put(key, entry, false);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Counts a {@code 304} answered from the cached entry.
+     */
+    /*package*/ void hit() {
+        hits.incrementAndGet();
+    }
+
+    /*package*/ Entry put(String key, String etag, String lastModified, String link, byte[] body) {
+        Entry entry = new Entry(etag, lastModified, link, body);
+        if (body.length <= maxBytes) {
+            put(key, entry, true);
+        }
+        return entry;
+    }
+
+    private void put(String key, Entry entry, boolean write) {
+        synchronized (this) {
+            Entry old = entries.put(key, entry);
+            if (old != null) {
+                bytes -= old.body.length;
+            }
+            bytes += entry.body.length;
+            for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+                 bytes > maxBytes && it.hasNext();) {
+                Map.Entry<String, Entry> eldest = it.next();
+                bytes -= eldest.getValue().body.length;
+                it.remove();
+                delete(eldest.getKey());
+            }
+        }
+        if (write && directory != null) {
+            write(key, entry);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Number of {@code 304} responses answered with a cached body.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of requests sent without validators, as nothing was cached for them.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Number of requests sent with validators of a cached entry.
+     */
+    public long getRevalidationCount() {
+        return revalidations.get();
+    }
+
+    /**
+     * Number of requests answered with a cached body without asking the server, as it was unavailable.
+     */
+    public long getStaleCount() {
+        return stale.get();
+    }
+
+    private Entry read(String key) {
+        File file = new File(directory, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            String etag = readString(in);
+            String lastModified = readString(in);
+            String link = readString(in);
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Entry(etag, lastModified, link, body);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Dropping unreadable cache entry " + file, e);
+            delete(key);
+            return null;
+        }
+    }
+
+    private void write(String key, Entry entry) {
+        try {
+            Files.createDirectories(directory.toPath());
+            File tmp = File.createTempFile(key, ".tmp", directory);
+            try {
+                try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+                    writeString(out, entry.etag);
+                    writeString(out, entry.lastModified);
+                    writeString(out, entry.link);
+                    out.writeInt(entry.body.length);
+                    out.write(entry.body);
+                }
+                Files.move(tmp.toPath(), new File(directory, key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to write cache entry to " + directory, e);
+        }
+    }
+
+    private void delete(String key) {
+        if (directory != null) {
+            File file = new File(directory, key);
+            if (file.exists() && !file.delete()) {
+                LOGGER.log(Level.FINE, "Failed to delete cache entry {0}", file);
+            }
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Coalesces identical concurrent requests, so that the callers share the one in flight and its result.
+ *
+ * <p>
+ * The first caller for a key runs the request in its own thread, the others wait for it and get the very
+ * same result objects, as callers of {@link Coding#getUser(String)} already do. Requests are only shared
+ * between callers with the same owner, the {@link Coding} root the results get wired to, so that no
+ * caller rewires the objects another root handed out. Nothing is kept once the request completes,
+ * caching the result is left to {@link ResponseCache} and the callers.
+ */
+final class SingleFlight {
+
+    private static final ConcurrentMap<List<?>, FutureTask<?>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private SingleFlight() { }
+
+    @SuppressWarnings("unchecked")
+    static <T> T call(Object owner, String key, Callable<T> request) throws IOException {
+        List<?> flight = Arrays.asList(owner, key);
+        FutureTask<T> task = new FutureTask<>(request);
+        FutureTask<T> inFlight = (FutureTask<T>) IN_FLIGHT.putIfAbsent(flight, task);
+        if (inFlight == null) {
+            try {
+                task.run();
+            } finally {
+                IN_FLIGHT.remove(flight, task);
+            }
+            inFlight = task;
+        }
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while waiting for a request").initCause(e);
+        } catch (ExecutionException e) {
+            throw Requester.unwrap(e);
+        }
+    }
+
+    static int size() {
+        return IN_FLIGHT.size();
+    }
+}
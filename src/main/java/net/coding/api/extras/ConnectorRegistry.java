@@ -0,0 +1,123 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api.extras;
+
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import com.squareup.okhttp.Protocol;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import net.coding.api.HttpConnector;
+
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out one {@link OkHttpClient} per Coding server and proxy, so that all users, and all requests
+ * to the same server, share its pool of keep-alive connections and TLS sessions instead of each
+ * setting up their own.
+ *
+ * <p>
+ * HTTP/2 is negotiated when the runtime supports ALPN, HTTP/1.1 is used otherwise.
+ */
+public final class ConnectorRegistry {
+    private static final String PROPERTY_PREFIX = ConnectorRegistry.class.getName();
+
+    /**
+     * Maximum number of idle connections kept per server.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int MAX_IDLE_CONNECTIONS = Integer.getInteger(PROPERTY_PREFIX + ".maxIdleConnections", 5);
+
+    /**
+     * Time in milliseconds an idle connection is kept alive.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static long KEEP_ALIVE = Long.getLong(PROPERTY_PREFIX + ".keepAlive", TimeUnit.MINUTES.toMillis(5));
+
+    private static final ConcurrentMap<String, OkHttpClient> CLIENTS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, HttpConnector> CONNECTORS = new ConcurrentHashMap<>();
+
+    private ConnectorRegistry() { }
+
+    /**
+     * @param endpoint any URL of the server, only its scheme, host and port are used
+     * @param proxy proxy to connect through, {@code null} for a direct connection
+     */
+    public static OkHttpClient getClient(String endpoint, Proxy proxy) throws MalformedURLException {
+        String key = key(endpoint, proxy);
+        OkHttpClient client = CLIENTS.get(key);
+        if (client == null) {
+            OkHttpClient created = newClient(proxy);
+            client = CLIENTS.putIfAbsent(key, created);
+            if (client == null) {
+                client = created;
+            }
+        }
+        return client;
+    }
+
+    /**
+     * The {@link HttpConnector} to build a {@link net.coding.api.Coding} instance with, backed by
+     * {@link #getClient(String, Proxy)}.
+     */
+    public static HttpConnector getConnector(String endpoint, Proxy proxy) throws MalformedURLException {
+        String key = key(endpoint, proxy);
+        HttpConnector connector = CONNECTORS.get(key);
+        if (connector == null) {
+            HttpConnector created = new OkHttpConnector(new OkUrlFactory(getClient(endpoint, proxy)));
+            connector = CONNECTORS.putIfAbsent(key, created);
+            if (connector == null) {
+                connector = created;
+            }
+        }
+        return connector;
+    }
+
+    private static OkHttpClient newClient(Proxy proxy) {
+        OkHttpClient client = new OkHttpClient();
+        client.setProxy(proxy == null ? Proxy.NO_PROXY : proxy);
+        client.setConnectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE));
+        client.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        client.setConnectTimeout(ImpatientHttpConnector.CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+        client.setReadTimeout(ImpatientHttpConnector.READ_TIMEOUT, TimeUnit.MILLISECONDS);
+        client.setWriteTimeout(ImpatientHttpConnector.READ_TIMEOUT, TimeUnit.MILLISECONDS);
+        return client;
+    }
+
+    private static String key(String endpoint, Proxy proxy) throws MalformedURLException {
+        URL url = new URL(endpoint);
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        return url.getProtocol() + "://" + url.getHost().toLowerCase(Locale.ENGLISH) + ':' + port
+                + ' ' + (proxy == null ? Proxy.NO_PROXY : proxy);
+    }
+}
@@ -19,13 +19,13 @@
  */
 package net.coding.jenkins.plugin;
 
-import com.google.gson.Gson;
 import hudson.Extension;
 import hudson.Util;
 import hudson.model.Item;
 import hudson.model.Job;
 import hudson.triggers.Trigger;
 import hudson.triggers.TriggerDescriptor;
+import hudson.util.FormValidation;
 import jenkins.model.Jenkins;
 import jenkins.model.ParameterizedJobMixIn;
 import jenkins.triggers.SCMTriggerItem;
@@ -41,14 +41,19 @@ import net.coding.jenkins.plugin.webhook.TriggerHandler;
 import net.coding.jenkins.plugin.webhook.filter.BranchFilterConfig;
 import net.coding.jenkins.plugin.webhook.filter.BranchFilterFactory;
 import net.coding.jenkins.plugin.webhook.filter.BranchFilterType;
+import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.Ancestor;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.ObjectStreamException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * @author tsl0922
@@ -70,6 +75,8 @@ public class CodingPushTrigger extends Trigger<Job<?, ?>> {
     private String includeBranchesSpec;
     private String excludeBranchesSpec;
     private String targetBranchRegex;
+    private int pushCoalescingWindow;
+    private boolean supersedeBuilds;
 
     @Getter(AccessLevel.NONE)
     @Setter(AccessLevel.NONE)
@@ -105,10 +112,23 @@ public class CodingPushTrigger extends Trigger<Job<?, ?>> {
                 branchFilterType, includeBranchesSpec, excludeBranchesSpec, targetBranchRegex);
         this.triggerHandler = new TriggerHandler(
                 this.triggerOnPush, this.triggerOnMergeRequest, mergeRequestTriggerAction,
-                BranchFilterFactory.newBranchFilter(branchFilterConfig)
+                BranchFilterFactory.newBranchFilter(branchFilterConfig),
+                pushCoalescingWindow, supersedeBuilds
         );
     }
 
+    @DataBoundSetter
+    public void setPushCoalescingWindow(int pushCoalescingWindow) {
+        this.pushCoalescingWindow = Math.max(0, pushCoalescingWindow);
+        initializeTriggerHandler();
+    }
+
+    @DataBoundSetter
+    public void setSupersedeBuilds(boolean supersedeBuilds) {
+        this.supersedeBuilds = supersedeBuilds;
+        initializeTriggerHandler();
+    }
+
     @Override
     protected Object readResolve() throws ObjectStreamException {
         initializeTriggerHandler();
@@ -120,10 +140,10 @@ public class CodingPushTrigger extends Trigger<Job<?, ?>> {
         if (helper == null) {
             throw hudson.util.HttpResponses.error(400, "Bad Request");
         }
-        if (helper.isSignatureValid(task, webHookToken)) {
+        if (task.isSignatureVerified() || helper.isSignatureValid(task, webHookToken)) {
             triggerHandler.handle(job, task, ciSkip);
         } else {
-            LOGGER.log(Level.INFO, "Skipping due to invalid Signature for webHookTask: {0}", new Gson().toJson(task));
+            LOGGER.log(Level.INFO, "Skipping due to invalid Signature for webHookTask: {0}", task);
             throw hudson.util.HttpResponses.error(401, "Signature Invalid");
         }
     }
@@ -180,6 +200,18 @@ public class CodingPushTrigger extends Trigger<Job<?, ?>> {
             }
         }
 
+        public FormValidation doCheckTargetBranchRegex(@QueryParameter String value) {
+            if (StringUtils.isNotEmpty(value)) {
+                try {
+                    Pattern.compile(value);
+                } catch (PatternSyntaxException e) {
+                    // such a filter would let no branch through
+                    return FormValidation.error(Messages.coding_trigger_invalidTargetBranchRegex(e.getDescription()));
+                }
+            }
+            return FormValidation.ok();
+        }
+
         private Job<?, ?> retrieveCurrentJob() {
             StaplerRequest request = Stapler.getCurrentRequest();
             if (request != null) {
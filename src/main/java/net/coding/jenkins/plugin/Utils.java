@@ -19,11 +19,19 @@
  */
 package net.coding.jenkins.plugin;
 
+import com.squareup.okhttp.OkHttpClient;
+import jenkins.model.Jenkins;
+import net.coding.api.HttpConnector;
+import net.coding.api.extras.ConnectorRegistry;
 import org.apache.commons.io.IOUtils;
 import org.kohsuke.stapler.HttpResponses;
 
+import javax.annotation.Nonnull;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URL;
 import java.nio.charset.Charset;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -32,11 +40,46 @@ public class Utils {
     public static String getRequestBody(HttpServletRequest request) {
         String requestBody;
         try {
-            Charset charset = request.getCharacterEncoding() == null ? UTF_8 : Charset.forName(request.getCharacterEncoding());
-            requestBody = IOUtils.toString(request.getInputStream(), charset);
+            requestBody = IOUtils.toString(request.getInputStream(), getRequestCharset(request));
         } catch (IOException e) {
             throw HttpResponses.error(500, "Failed to read request body");
         }
         return requestBody;
     }
+
+    public static Charset getRequestCharset(HttpServletRequest request) {
+        return request.getCharacterEncoding() == null ? UTF_8 : Charset.forName(request.getCharacterEncoding());
+    }
+
+    /**
+     * Shared HTTP client for the Coding server of the given URL, see {@link ConnectorRegistry}.
+     */
+    public static OkHttpClient getHttpClient(@Nonnull String url) throws MalformedURLException {
+        return ConnectorRegistry.getClient(url, getProxy(new URL(url).getHost()));
+    }
+
+    /**
+     * Shared connector to build a {@link net.coding.api.Coding} instance for the server of the given URL with.
+     */
+    public static HttpConnector getConnector(@Nonnull String url) throws MalformedURLException {
+        return ConnectorRegistry.getConnector(url, getProxy(new URL(url).getHost()));
+    }
+
+    /**
+     * Uses proxy if configured on pluginManager/advanced page
+     *
+     * @param host Coding's hostname to build proxy to
+     *
+     * @return proxy to use it in connector. Should not be null as it can lead to unexpected behaviour
+     */
+    @Nonnull
+    public static Proxy getProxy(@Nonnull String host) {
+        Jenkins jenkins = Jenkins.getInstance();
+
+        if (jenkins == null || jenkins.proxy == null) {
+            return Proxy.NO_PROXY;
+        } else {
+            return jenkins.proxy.createProxy(host);
+        }
+    }
 }
@@ -0,0 +1,55 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.bean;
+
+import lombok.Data;
+import lombok.ToString;
+
+/**
+ * Build result to be marked on a commit or a merge request of Coding.
+ *
+ * <p>
+ * The tokens are transient, so that they are not written to the outbox, they are read again
+ * from the trigger of the job when a note is replayed.
+ */
+@Data
+public class ResultNote {
+    public static final String TARGET_COMMIT = "Commit";
+    public static final String TARGET_MERGE_REQUEST = "MergeRequestBean";
+    public static final String TARGET_PULL_REQUEST = "PullRequestBean";
+
+    private String projectApiUrl;
+    private String targetType;
+    private long targetId;
+    private String commitId;
+    private String mergeRequestTitle;
+    private String buildUrl;
+    private boolean success;
+    private String jobFullName;
+    /**
+     * Assigned by the outbox, the latest note of a target supersedes the earlier ones.
+     */
+    private long sequence;
+
+    @ToString.Exclude
+    private transient String personalToken;
+    @ToString.Exclude
+    private transient String apiToken;
+}
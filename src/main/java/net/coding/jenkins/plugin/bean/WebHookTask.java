@@ -19,13 +19,21 @@
  */
 package net.coding.jenkins.plugin.bean;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import net.coding.jenkins.plugin.model.Repository;
 import net.coding.jenkins.plugin.model.User;
 import net.coding.jenkins.plugin.model.event.CodingBaseEvent;
 import net.coding.jenkins.plugin.model.event.MergeRequest;
 import net.coding.jenkins.plugin.model.event.Push;
 
+import java.nio.charset.Charset;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 @Data
 public class WebHookTask {
 
@@ -37,8 +45,42 @@ public class WebHookTask {
     private String event;
     private String signature;
     private String version;
-    private String requestBody;
     private boolean parseSuccess = false;
+    private boolean signatureVerified = false;
+
+    /**
+     * Raw request body, kept for signature verification.
+     */
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private byte[] payload;
+    @ToString.Exclude
+    @Setter(AccessLevel.NONE)
+    private Charset charset = UTF_8;
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    private String requestBody;
+
+    public void setPayload(byte[] payload, Charset charset) {
+        this.payload = payload;
+        this.charset = charset;
+        this.requestBody = null;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Request body as text, only decoded when asked for, e.g. for logging.
+     */
+    public String getRequestBody() {
+        if (requestBody == null && payload != null) {
+            requestBody = new String(payload, charset);
+        }
+        return requestBody;
+    }
 
     public Repository getRepository() {
         CodingBaseEvent baseEvent = getBaseEvent();
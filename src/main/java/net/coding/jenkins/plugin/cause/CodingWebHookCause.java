@@ -27,7 +27,11 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * @author tsl0922
  */
 public class CodingWebHookCause extends SCMTrigger.SCMTriggerCause {
-    private final CauseData data;
+    private volatile CauseData data;
+    /**
+     * Number of later events whose data replaced the original one while the build was pending.
+     */
+    private volatile int coalescedEvents;
 
     public CodingWebHookCause(CauseData data) {
         super("");
@@ -38,8 +42,25 @@ public class CodingWebHookCause extends SCMTrigger.SCMTriggerCause {
         return data;
     }
 
+    public int getCoalescedEvents() {
+        return coalescedEvents;
+    }
+
+    /**
+     * Replaces the data of a pending build with the one of a newer event, so that the build
+     * picks up the newest revision when it starts.
+     */
+    public synchronized void coalesce(CauseData newer) {
+        this.data = checkNotNull(newer, "data must not be null");
+        this.coalescedEvents++;
+    }
+
     @Override
     public String getShortDescription() {
-        return data.getShortDescription();
+        String description = data.getShortDescription();
+        if (coalescedEvents > 0) {
+            description += " " + Messages.coding_action_coalesced(coalescedEvents);
+        }
+        return description;
     }
 }
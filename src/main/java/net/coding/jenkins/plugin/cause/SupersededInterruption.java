@@ -0,0 +1,50 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.cause;
+
+import jenkins.model.CauseOfInterruption;
+
+/**
+ * Records the event for which a build of the same merge request or branch was aborted.
+ */
+public class SupersededInterruption extends CauseOfInterruption {
+    private static final long serialVersionUID = 1L;
+
+    private final String event;
+    private final String commitId;
+
+    public SupersededInterruption(CauseData data) {
+        this.event = data.getShortDescription();
+        this.commitId = data.getCommitId();
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public String getCommitId() {
+        return commitId;
+    }
+
+    @Override
+    public String getShortDescription() {
+        return Messages.coding_action_superseded(event, commitId);
+    }
+}
@@ -28,8 +28,11 @@ import java.util.Map;
 
 public class JSON {
 
+    // Gson instances are thread-safe, build it once instead of on every call
+    private static final Gson GSON = getGsonBuilder().create();
+
     public static Gson getGson() {
-        return getGsonBuilder().create();
+        return GSON;
     }
 
     public static GsonBuilder getGsonBuilder() {
@@ -0,0 +1,107 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.listener;
+
+import hudson.Extension;
+import hudson.console.ConsoleLogFilter;
+import hudson.console.LineTransformationOutputStream;
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import net.coding.jenkins.plugin.cause.CodingWebHookCause;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the console of webhook triggered runs for the checkout failure of a revision that doesn't
+ * exist anymore, e.g. of a branch force pushed in the meantime, and flags the run with
+ * {@link AmbiguousRevision}, so that {@link BuildResultListener} doesn't have to read the log again.
+ */
+@Extension
+public class AmbiguousRevisionLogFilter extends ConsoleLogFilter {
+    private static final Logger LOGGER = Logger.getLogger(AmbiguousRevisionLogFilter.class.getName());
+
+    @Override
+    public OutputStream decorateLogger(final Run build, OutputStream logger) throws IOException, InterruptedException {
+        if (build == null || build.getCause(CodingWebHookCause.class) == null) {
+            return logger;
+        }
+        return new DetectingOutputStream(logger, build.getCharset(), new Runnable() {
+            @Override
+            public void run() {
+                LOGGER.log(Level.FINE, "Ambiguous revision detected in {0}", build);
+                if (build.getAction(AmbiguousRevision.class) == null) {
+                    build.addAction(new AmbiguousRevision());
+                }
+            }
+        });
+    }
+
+    static boolean isAmbiguousRevision(String line) {
+        return line.contains("stderr: fatal: ambiguous argument")
+                && line.contains("unknown revision or path not in the working tree");
+    }
+
+    /**
+     * Marks a run whose checkout failed on an unknown revision.
+     */
+    public static class AmbiguousRevision extends InvisibleAction {
+    }
+
+    /**
+     * Passes the console through, and calls {@code onDetected} for the first line reporting an
+     * ambiguous revision.
+     */
+    static class DetectingOutputStream extends LineTransformationOutputStream {
+        private final OutputStream out;
+        private final Charset charset;
+        private final Runnable onDetected;
+        private boolean detected;
+
+        DetectingOutputStream(OutputStream out, Charset charset, Runnable onDetected) {
+            this.out = out;
+            this.charset = charset;
+            this.onDetected = onDetected;
+        }
+
+        @Override
+        protected void eol(byte[] b, int len) throws IOException {
+            out.write(b, 0, len);
+            if (!detected && isAmbiguousRevision(new String(b, 0, len, charset))) {
+                detected = true;
+                onDetected.run();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            out.close();
+        }
+    }
+}
@@ -21,8 +21,6 @@ package net.coding.jenkins.plugin.listener;
 
 import net.coding.jenkins.plugin.cause.CodingWebHookCause;
 
-import java.io.IOException;
-
 import hudson.Extension;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildStepListener;
@@ -49,17 +47,7 @@ public class BuildResultListener extends BuildStepListener {
     }
 
     private boolean isCommitAmbiguous(AbstractBuild build) {
-        try {
-            for (Object log : build.getLog(500)) {
-                String str = log.toString();
-                if (str.contains("stderr: fatal: ambiguous argument")
-                        && str.contains("unknown revision or path not in the working tree")) {
-                    return true;
-                }
-            }
-            return false;
-        } catch (IOException e) {
-            return false;
-        }
+        // flagged while the log is written, see AmbiguousRevisionLogFilter
+        return build.getAction(AmbiguousRevisionLogFilter.AmbiguousRevision.class) != null;
     }
 }
@@ -20,8 +20,10 @@
 package net.coding.jenkins.plugin.listener;
 
 import com.google.common.base.Strings;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import hudson.Extension;
 import hudson.model.Action;
 import hudson.model.Result;
@@ -31,33 +33,21 @@ import hudson.model.listeners.RunListener;
 import hudson.plugins.git.RevisionParameterAction;
 import jenkins.model.Jenkins;
 import net.coding.jenkins.plugin.CodingPushTrigger;
+import net.coding.jenkins.plugin.bean.ResultNote;
 import net.coding.jenkins.plugin.cause.CauseData;
 import net.coding.jenkins.plugin.cause.CodingWebHookCause;
-import org.apache.commons.httpclient.HttpStatus;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.http.HttpResponse;
-import org.apache.http.NameValuePair;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.message.BasicNameValuePair;
 import org.eclipse.jgit.transport.URIish;
 
 import javax.annotation.Nonnull;
-import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static net.coding.jenkins.plugin.webhook.CodingWebHook.API_TOKEN_PARAM;
-import static net.coding.jenkins.plugin.webhook.CodingWebHook.PERSONAL_TOKEN_HEADER;
-
 /**
  * @author tsl0922
  */
@@ -65,6 +55,14 @@ import static net.coding.jenkins.plugin.webhook.CodingWebHook.PERSONAL_TOKEN_HEA
 public class MergeRequestRunListener extends RunListener<Run<?, ?>> {
     private static final Logger LOGGER = Logger.getLogger(MergeRequestRunListener.class.getName());
 
+    private static final Pattern PROFESSIONAL_PROJECT_URL = Pattern.compile("(https?://[^/]+)/[ut]/([^/]+)/p/([^/]+).*");
+    private static final Pattern ENTERPRISE_PROJECT_URL = Pattern.compile("(https?://[^/]+)/p/([^/]+).*");
+
+    /**
+     * Project api url by project html url and full name.
+     */
+    private static final Cache<String, String> PROJECT_API_URLS = CacheBuilder.newBuilder().maximumSize(1024).build();
+
     @Override
     public void onCompleted(Run<?, ?> build, @Nonnull TaskListener listener) {
         CodingPushTrigger trigger = CodingPushTrigger.getFromJob(build.getParent());
@@ -82,91 +80,65 @@ public class MergeRequestRunListener extends RunListener<Run<?, ?>> {
             return;
         }
 
-        String targetType;
-        long targetId = 0;
+        ResultNote note = new ResultNote();
         switch (cause.getData().getActionType()) {
             case PUSH:
-                targetType = "Commit";
+                note.setTargetType(ResultNote.TARGET_COMMIT);
                 break;
             case MR:
-                targetType = "MergeRequestBean";
-                targetId = cause.getData().getMergeRequestId();
+                note.setTargetType(ResultNote.TARGET_MERGE_REQUEST);
+                note.setTargetId(cause.getData().getMergeRequestId());
                 break;
             case PR:
-                targetType = "PullRequestBean";
-                targetId = cause.getData().getMergeRequestId();
+                note.setTargetType(ResultNote.TARGET_PULL_REQUEST);
+                note.setTargetId(cause.getData().getMergeRequestId());
                 break;
             default:
                 return;
         }
 
-        boolean success = build.getResult() == Result.SUCCESS;
-
         if (trigger.isAddResultNote()) {
-            addResultNote(
-                    personalToken, apiToken, getBuildUrl(build),
-                    cause.getData(),
-                    success,
-                    targetType, targetId
-            );
+            try {
+                note.setProjectApiUrl(projectApiUrl(cause.getData()));
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, "Failed to add result note: {0}", e.getMessage());
+                return;
+            }
+            note.setCommitId(cause.getData().getCommitId());
+            note.setMergeRequestTitle(cause.getData().getMergeRequestTitle());
+            note.setBuildUrl(getBuildUrl(build));
+            note.setSuccess(build.getResult() == Result.SUCCESS);
+            note.setJobFullName(build.getParent().getFullName());
+            note.setPersonalToken(personalToken);
+            note.setApiToken(apiToken);
+            ResultNoteOutbox.get().submit(note);
         }
     }
 
-    private void addResultNote(String personalToken, String apiToken, String buildUrl, CauseData causeData, boolean success,
-                               String targetType, long targetId) {
-        String commitId = causeData.getCommitId();
-        String postUrl = String.format("%s/git/mark", projectApiUrl(causeData));
-        HttpPost httpPost = new HttpPost(postUrl);
-        LOGGER.log(Level.FINEST, "Result Note to {0}", postUrl);
-
-        List<NameValuePair> nvps = new ArrayList<>();
-        nvps.add(new BasicNameValuePair("icon", "jenkins"));
-        nvps.add(new BasicNameValuePair("name", "Jenkins"));
-        nvps.add(new BasicNameValuePair("url", buildUrl));
-        nvps.add(new BasicNameValuePair("status", success ? "1" : "2"));
-        nvps.add(new BasicNameValuePair("markable_type", targetType));
-        if (StringUtils.equals(targetType, "MergeRequestBean")) {
-            nvps.add(new BasicNameValuePair("markable_id", String.valueOf(targetId)));
-            String template = "build %s for merge request %s";
-            String content = String.format(template, success ? "SUCCESS" : "FAILURE", causeData.getMergeRequestTitle());
-            nvps.add(new BasicNameValuePair("description", content));
-        } else if (StringUtils.equals(targetType, "Commit")) {
-            nvps.add(new BasicNameValuePair("sha", commitId));
-            String template = "build %s for commit %s";
-            String content = String.format(template, success ? "SUCCESS" : "FAILURE", commitId);
-            nvps.add(new BasicNameValuePair("description", content));
-        }
-        if (!Strings.isNullOrEmpty(personalToken)) {
-            httpPost.setHeader(PERSONAL_TOKEN_HEADER, "token " + personalToken);
-        } else {
-            nvps.add(new BasicNameValuePair(API_TOKEN_PARAM, apiToken));
-        }
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            httpPost.setEntity(new UrlEncodedFormEntity(nvps));
-            HttpResponse response = httpClient.execute(httpPost);
-            int code = response.getStatusLine().getStatusCode();
-            String json = IOUtils.toString(response.getEntity().getContent());
-            LOGGER.log(Level.FINEST, "Result Note response {0}", json);
-            JsonObject o = new JsonParser().parse(json).getAsJsonObject();
-            if (code != HttpStatus.SC_OK || o.get("code").getAsInt() != 0) {
-                LOGGER.log(Level.INFO, "Failed to add note, code: {0}, text: {1}", new Object[]{code, json});
-            }
-        } catch (IOException e) {
-            LOGGER.warning("Failed to add commit note: " + e.getMessage());
+    public String projectApiUrl(final CauseData causeData) {
+        final String htmlUrl = causeData.getProjectHtmlUrl();
+        final String fullName = causeData.getFullName();
+        try {
+            // the team is only taken from the full name for enterprise projects
+            return PROJECT_API_URLS.get(htmlUrl + ' ' + fullName, new Callable<String>() {
+                @Override
+                public String call() {
+                    return resolveProjectApiUrl(htmlUrl, fullName);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause());
+            throw new IllegalStateException(e.getCause());
         }
     }
 
-    public String projectApiUrl(CauseData causeData) {
-        String htmlUrl = causeData.getProjectHtmlUrl();
-        String fullName = causeData.getFullName();
-        Pattern pattern = Pattern.compile("(https?://[^/]+)/[ut]/([^/]+)/p/([^/]+).*");
-        Matcher matcher = pattern.matcher(htmlUrl);
+    private static String resolveProjectApiUrl(String htmlUrl, String fullName) {
+        Matcher matcher = PROFESSIONAL_PROJECT_URL.matcher(htmlUrl);
         if (matcher.matches()) {
             // is professional
             return String.format("%s/api/user/%s/project/%s", matcher.group(1), matcher.group(2), matcher.group(3));
         }
-        pattern = Pattern.compile("(https?://[^/]+)/p/([^/]+).*");
-        matcher = pattern.matcher(htmlUrl);
+        matcher = ENTERPRISE_PROJECT_URL.matcher(htmlUrl);
         if (matcher.matches()) {
             // is enterprise
             String host = matcher.group(1);
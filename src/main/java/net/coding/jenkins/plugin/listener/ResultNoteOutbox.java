@@ -0,0 +1,465 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.listener;
+
+import com.google.common.base.Strings;
+import com.google.gson.JsonParseException;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Extension;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.init.Terminator;
+import hudson.model.PeriodicWork;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import jenkins.util.AtmostOneTaskExecutor;
+import net.coding.jenkins.plugin.CodingPushTrigger;
+import net.coding.jenkins.plugin.bean.ResultNote;
+import net.coding.jenkins.plugin.common.gson.JSON;
+import net.coding.jenkins.plugin.webhook.WebHookJobCache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Durable store of the result notes not sent yet, so that they survive outages of Coding and
+ * restarts of Jenkins.
+ *
+ * <p>
+ * Notes are kept by job and target, i.e. commit or merge request, and only the latest note of a
+ * job on a target is kept and sent: a backlog never publishes outdated results, while jobs building
+ * the same target each get their note. Every change is appended to
+ * {@code $JENKINS_HOME/coding-webhook/result-notes.log}, which is rewritten with the pending
+ * notes only once it has grown enough. The pending notes are replayed at startup and then
+ * periodically, for the ones {@link ResultNotePublisher} has given up on.
+ *
+ * <p>
+ * The log is written by a background thread, outside the monitor of the outbox: submitting a note
+ * from the run-completion thread, or checking it from the publisher, never waits for the disk.
+ */
+public final class ResultNoteOutbox {
+    private static final Logger LOGGER = Logger.getLogger(ResultNoteOutbox.class.getName());
+
+    private static final String PROPERTY_PREFIX = ResultNoteOutbox.class.getName();
+
+    /**
+     * Interval in milliseconds between two replays of the notes that could not be sent.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static long DRAIN_PERIOD = Long.getLong(PROPERTY_PREFIX + ".drainPeriod", TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * Number of records after which the log is compacted, if most of them are obsolete.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int COMPACTION_THRESHOLD = Integer.getInteger(PROPERTY_PREFIX + ".compactionThreshold", 1000);
+
+    private static final String LOG_FILE = "coding-webhook/result-notes.log";
+    private static final String PUT = "put";
+    private static final String DONE = "done";
+
+    private static final ResultNoteOutbox INSTANCE = new ResultNoteOutbox();
+
+    /**
+     * Latest note by target, in submission order.
+     */
+    private final Map<String, Entry> pending = new LinkedHashMap<>();
+    /**
+     * Records of the latest changes, not written to the log yet.
+     */
+    private final List<Record> unwritten = new ArrayList<>();
+    private long sequence;
+    private boolean loaded;
+    private File file;
+
+    /**
+     * Serializes the writes to the log, guards {@link #records} and {@link #writer}.
+     */
+    private final Object logLock = new Object();
+    private int records;
+    private Writer writer;
+
+    private final AtmostOneTaskExecutor<Void> logWriter = new AtmostOneTaskExecutor<>(
+            new ThreadPoolExecutor(0, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "Coding result note log")),
+            new Callable<Void>() {
+                @Override
+                public Void call() {
+                    flush();
+                    return null;
+                }
+            });
+
+    private ResultNoteOutbox() { }
+
+    /**
+     * Outbox logging to the given file instead of the one under {@code $JENKINS_HOME}.
+     */
+    ResultNoteOutbox(File file) {
+        this.file = file;
+    }
+
+    public static ResultNoteOutbox get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the note as the latest one of its target and sends it.
+     */
+    public void submit(ResultNote note) {
+        publish(put(note));
+    }
+
+    /**
+     * Records the note as the latest one of its target, handed over to the publisher.
+     */
+    synchronized Entry put(ResultNote note) {
+        load();
+        note.setSequence(++sequence);
+        String key = key(note);
+        Entry entry = new Entry(note);
+        entry.inFlight = true;
+        pending.put(key, entry);
+        log(new Record(PUT, key, note.getSequence(), note));
+        return entry;
+    }
+
+    /**
+     * Number of notes not sent yet.
+     */
+    public synchronized int getPendingCount() {
+        load();
+        return pending.size();
+    }
+
+    /**
+     * Whether the note is still the latest one of its target, a superseded note is not worth sending.
+     */
+    synchronized boolean isCurrent(ResultNote note) {
+        Entry entry = pending.get(key(note));
+        return entry != null && entry.note.getSequence() == note.getSequence();
+    }
+
+    /**
+     * Called by the publisher once it is done with a note.
+     *
+     * @param outcome {@link ResultNotePublisher.Outcome#RETRY} if the publisher has given up retrying,
+     *                the note is then left to the next replay
+     */
+    synchronized void completed(ResultNote note, ResultNotePublisher.Outcome outcome) {
+        String key = key(note);
+        Entry entry = pending.get(key);
+        if (entry == null || entry.note.getSequence() != note.getSequence()) {
+            // superseded, the latest note has its own record
+            return;
+        }
+        if (outcome == ResultNotePublisher.Outcome.RETRY) {
+            entry.inFlight = false;
+            return;
+        }
+        pending.remove(key);
+        log(new Record(DONE, key, note.getSequence(), null));
+    }
+
+    /**
+     * Sends again the notes that are neither sent nor being sent.
+     */
+    void drain() {
+        List<Entry> entries = new ArrayList<>();
+        synchronized (this) {
+            load();
+            for (Entry entry : pending.values()) {
+                if (!entry.inFlight) {
+                    entry.inFlight = true;
+                    entries.add(entry);
+                }
+            }
+        }
+        if (!entries.isEmpty()) {
+            LOGGER.log(Level.INFO, "Replaying {0} pending result notes", entries.size());
+        }
+        for (Entry entry : entries) {
+            if (!resolveTokens(entry.note)) {
+                LOGGER.log(Level.INFO, "No token to add result note anymore, dropping {0}", entry.note);
+                completed(entry.note, ResultNotePublisher.Outcome.FAILED);
+                continue;
+            }
+            publish(entry);
+        }
+    }
+
+    private void publish(Entry entry) {
+        if (!ResultNotePublisher.publish(entry.note)) {
+            synchronized (this) {
+                entry.inFlight = false;
+            }
+        }
+    }
+
+    /**
+     * Tokens are not persisted, notes read from the log take them from the trigger of their job.
+     */
+    private static boolean resolveTokens(ResultNote note) {
+        if (!Strings.isNullOrEmpty(note.getPersonalToken()) || !Strings.isNullOrEmpty(note.getApiToken())) {
+            return true;
+        }
+        if (Strings.isNullOrEmpty(note.getJobFullName())) {
+            return false;
+        }
+        WebHookJobCache.Resolution resolution =
+                WebHookJobCache.get().resolve(note.getJobFullName(), Collections.<String>emptyList());
+        CodingPushTrigger trigger = resolution == null ? null : resolution.getTrigger();
+        if (trigger == null || !trigger.isAddResultNote()) {
+            return false;
+        }
+        note.setPersonalToken(trigger.getPersonalToken());
+        note.setApiToken(trigger.getApiToken());
+        return !Strings.isNullOrEmpty(note.getPersonalToken()) || !Strings.isNullOrEmpty(note.getApiToken());
+    }
+
+    /**
+     * Builds of the same job on a target supersede each other, builds of other jobs don't.
+     */
+    static String key(ResultNote note) {
+        String target = ResultNote.TARGET_COMMIT.equals(note.getTargetType())
+                ? note.getCommitId() : String.valueOf(note.getTargetId());
+        return note.getProjectApiUrl() + ' ' + note.getTargetType() + ' ' + target + ' ' + note.getJobFullName();
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (file == null) {
+            Jenkins jenkins = Jenkins.getInstance();
+            if (jenkins == null) {
+                return;
+            }
+            file = new File(jenkins.getRootDir(), LOG_FILE);
+        }
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    replay(line);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read " + file, e);
+            }
+        }
+        // the log is rewritten with the pending notes on its first write
+        logWriter.submit();
+    }
+
+    private void replay(String line) {
+        Record record;
+        try {
+            record = JSON.fromJson(line, Record.class);
+        } catch (JsonParseException e) {
+            // most likely the last record, torn by a crash
+            LOGGER.log(Level.WARNING, "Skipping corrupted result note record: {0}", line);
+            return;
+        }
+        if (record == null || record.key == null) {
+            return;
+        }
+        sequence = Math.max(sequence, record.seq);
+        Entry entry = pending.get(record.key);
+        if (entry != null && entry.note.getSequence() > record.seq) {
+            return;
+        }
+        if (PUT.equals(record.op) && record.note != null) {
+            pending.put(record.key, new Entry(record.note));
+        } else if (DONE.equals(record.op)) {
+            pending.remove(record.key);
+        }
+    }
+
+    private void log(Record record) {
+        if (file == null) {
+            return;
+        }
+        unwritten.add(record);
+        logWriter.submit();
+    }
+
+    /**
+     * Writes the records of the latest changes to the log, and compacts it once it has grown enough.
+     * Done by the background writer, and synchronously at shutdown.
+     */
+    void flush() {
+        synchronized (logLock) {
+            List<Record> batch;
+            File target;
+            synchronized (this) {
+                batch = new ArrayList<>(unwritten);
+                unwritten.clear();
+                target = file;
+            }
+            if (target == null) {
+                return;
+            }
+            if (writer != null) {
+                append(target, batch);
+            }
+            List<Record> snapshot = new ArrayList<>();
+            synchronized (this) {
+                if (writer != null && (records <= COMPACTION_THRESHOLD || records <= 2 * pending.size())) {
+                    return;
+                }
+                for (Map.Entry<String, Entry> e : pending.entrySet()) {
+                    ResultNote note = e.getValue().note;
+                    snapshot.add(new Record(PUT, e.getKey(), note.getSequence(), note));
+                }
+                // covered by the snapshot
+                unwritten.clear();
+            }
+            compact(target, snapshot);
+        }
+    }
+
+    /**
+     * Rewrites the log with the pending notes only.
+     */
+    private void compact(File target, List<Record> snapshot) {
+        closeWriter(target);
+        File tmp = new File(target.getPath() + ".tmp");
+        try {
+            Files.createDirectories(target.getParentFile().toPath());
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), UTF_8))) {
+                for (Record record : snapshot) {
+                    write(out, record);
+                }
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            records = snapshot.size();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to compact " + target, e);
+        }
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target, true), UTF_8));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to open " + target + ", result notes are only kept in memory", e);
+        }
+    }
+
+    private void append(File target, List<Record> batch) {
+        try {
+            for (Record record : batch) {
+                write(writer, record);
+                records++;
+            }
+            writer.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write result note records to " + target, e);
+            // rewritten from the pending notes right away
+            closeWriter(target);
+        }
+    }
+
+    private static void write(Writer out, Record record) throws IOException {
+        out.write(JSON.toJson(record));
+        out.write('\n');
+    }
+
+    private void closeWriter(File target) {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close " + target, e);
+            }
+            writer = null;
+        }
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void replayAtStartup() {
+        INSTANCE.drain();
+    }
+
+    @Terminator
+    public static void flushAtShutdown() {
+        INSTANCE.flush();
+    }
+
+    @Extension
+    public static class Drainer extends PeriodicWork {
+        @Override
+        public long getRecurrencePeriod() {
+            return DRAIN_PERIOD;
+        }
+
+        @Override
+        protected void doRun() {
+            INSTANCE.drain();
+        }
+    }
+
+    static final class Entry {
+        private final ResultNote note;
+        /**
+         * Whether the note is handed over to the publisher, and must not be replayed.
+         */
+        private boolean inFlight;
+
+        Entry(ResultNote note) {
+            this.note = note;
+        }
+    }
+
+    private static final class Record {
+        private String op;
+        private String key;
+        private long seq;
+        private ResultNote note;
+
+        Record(String op, String key, long seq, ResultNote note) {
+            this.op = op;
+            this.key = key;
+            this.seq = seq;
+            this.note = note;
+        }
+    }
+}
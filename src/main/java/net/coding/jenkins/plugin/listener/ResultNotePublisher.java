@@ -0,0 +1,316 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.listener;
+
+import com.google.common.base.Strings;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.squareup.okhttp.FormEncodingBuilder;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.init.Terminator;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import net.coding.jenkins.plugin.Utils;
+import net.coding.jenkins.plugin.bean.ResultNote;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static net.coding.jenkins.plugin.webhook.CodingWebHook.API_TOKEN_PARAM;
+import static net.coding.jenkins.plugin.webhook.CodingWebHook.PERSONAL_TOKEN_HEADER;
+
+/**
+ * Publishes build results to Coding in the background, so that completed builds don't wait for Coding.
+ *
+ * <p>
+ * Notes are sent over a shared pool of keep-alive connections by a few workers. Server errors and
+ * timeouts are retried with an exponential backoff, other failures are only logged. Notes are submitted
+ * through {@link ResultNoteOutbox}, which keeps the ones given up on for a later replay.
+ */
+public final class ResultNotePublisher {
+    private static final Logger LOGGER = Logger.getLogger(ResultNotePublisher.class.getName());
+
+    private static final String PROPERTY_PREFIX = ResultNotePublisher.class.getName();
+
+    /**
+     * Maximum number of notes waiting to be sent, retries included.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int CAPACITY = Integer.getInteger(PROPERTY_PREFIX + ".capacity", 500);
+
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int WORKERS = Integer.getInteger(PROPERTY_PREFIX + ".workers", 2);
+
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int MAX_ATTEMPTS = Integer.getInteger(PROPERTY_PREFIX + ".maxAttempts", 5);
+
+    /**
+     * Delay before the first retry in milliseconds, doubled for every following one.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static long RETRY_DELAY = Long.getLong(PROPERTY_PREFIX + ".retryDelay", 2000L);
+
+    /**
+     * Connect and read timeout in milliseconds.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int TIMEOUT = Integer.getInteger(PROPERTY_PREFIX + ".timeout", 10000);
+
+    private static final AtomicInteger PENDING = new AtomicInteger();
+    private static final AtomicLong SENT = new AtomicLong();
+    private static final AtomicLong FAILED = new AtomicLong();
+    private static final AtomicLong ATTEMPTS = new AtomicLong();
+    private static final AtomicLong LATENCY_NANOS = new AtomicLong();
+
+    private static volatile ScheduledThreadPoolExecutor executor;
+
+    enum Outcome {
+        SENT, FAILED, RETRY
+    }
+
+    private ResultNotePublisher() { }
+
+    /**
+     * @return {@code false} if the note has not been accepted as too many are pending, it is then left to
+     *      the next replay of {@link ResultNoteOutbox}
+     */
+    public static boolean publish(ResultNote note) {
+        if (PENDING.incrementAndGet() > CAPACITY) {
+            PENDING.decrementAndGet();
+            LOGGER.log(Level.WARNING, "Too many pending result notes, deferring {0}", note);
+            return false;
+        }
+        try {
+            executor().execute(new Attempt(note, 1));
+            return true;
+        } catch (RejectedExecutionException e) {
+            PENDING.decrementAndGet();
+            LOGGER.log(Level.WARNING, "Result note publisher is shut down, deferring {0}", note);
+            return false;
+        }
+    }
+
+    /**
+     * Number of notes waiting to be sent or retried.
+     */
+    public static int getQueueDepth() {
+        return PENDING.get();
+    }
+
+    public static long getSentCount() {
+        return SENT.get();
+    }
+
+    public static long getFailedCount() {
+        return FAILED.get();
+    }
+
+    /**
+     * Average duration of a request to Coding, failed ones included.
+     */
+    public static long getAverageSendLatencyMillis() {
+        long attempts = ATTEMPTS.get();
+        return attempts == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(LATENCY_NANOS.get() / attempts);
+    }
+
+    private static final class Attempt implements Runnable {
+        private final ResultNote note;
+        private final int attempt;
+
+        Attempt(ResultNote note, int attempt) {
+            this.note = note;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            ResultNoteOutbox outbox = ResultNoteOutbox.get();
+            if (!outbox.isCurrent(note)) {
+                PENDING.decrementAndGet();
+                LOGGER.log(Level.FINE, "Skipping superseded result note {0}", note);
+                return;
+            }
+            Outcome outcome;
+            try {
+                outcome = send(note);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Unexpected exception while adding result note", e);
+                outcome = Outcome.FAILED;
+            }
+            if (outcome == Outcome.RETRY && attempt < MAX_ATTEMPTS) {
+                long delay = retryDelay(attempt);
+                LOGGER.log(Level.FINE, "Retrying result note {0} in {1}ms", new Object[]{note, delay});
+                try {
+                    executor().schedule(new Attempt(note, attempt + 1), delay, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // shutting down, the outbox replays the note at the next start
+                }
+            }
+            PENDING.decrementAndGet();
+            if (outcome == Outcome.SENT) {
+                SENT.incrementAndGet();
+            } else {
+                FAILED.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Failed to add result note after {0} attempt(s): {1}",
+                        new Object[]{attempt, note});
+            }
+            outbox.completed(note, outcome);
+        }
+    }
+
+    static Outcome send(ResultNote note) {
+        String postUrl = String.format("%s/git/mark", note.getProjectApiUrl());
+        LOGGER.log(Level.FINEST, "Result Note to {0}", postUrl);
+        FormEncodingBuilder form = toForm(note);
+        Request.Builder request = new Request.Builder().url(postUrl);
+        if (!Strings.isNullOrEmpty(note.getPersonalToken())) {
+            request.header(PERSONAL_TOKEN_HEADER, "token " + note.getPersonalToken());
+        } else {
+            add(form, API_TOKEN_PARAM, note.getApiToken());
+        }
+        request.post(form.build());
+
+        long start = System.nanoTime();
+        try {
+            Response response = httpClient(postUrl).newCall(request.build()).execute();
+            int code = response.code();
+            String json = response.body().string();
+            LOGGER.log(Level.FINEST, "Result Note response {0}", json);
+            if (code >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                LOGGER.log(Level.INFO, "Failed to add note, code: {0}, text: {1}", new Object[]{code, json});
+                return Outcome.RETRY;
+            }
+            if (code != HttpURLConnection.HTTP_OK || resultCode(json) != 0) {
+                LOGGER.log(Level.INFO, "Failed to add note, code: {0}, text: {1}", new Object[]{code, json});
+                return Outcome.FAILED;
+            }
+            return Outcome.SENT;
+        } catch (IOException e) {
+            // timeouts included
+            LOGGER.log(Level.INFO, "Failed to add commit note: {0}", e.getMessage());
+            return Outcome.RETRY;
+        } finally {
+            ATTEMPTS.incrementAndGet();
+            LATENCY_NANOS.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private static FormEncodingBuilder toForm(ResultNote note) {
+        FormEncodingBuilder form = new FormEncodingBuilder();
+        String status = note.isSuccess() ? "SUCCESS" : "FAILURE";
+        add(form, "icon", "jenkins");
+        add(form, "name", "Jenkins");
+        add(form, "url", note.getBuildUrl());
+        add(form, "status", note.isSuccess() ? "1" : "2");
+        add(form, "markable_type", note.getTargetType());
+        if (StringUtils.equals(note.getTargetType(), ResultNote.TARGET_MERGE_REQUEST)) {
+            add(form, "markable_id", String.valueOf(note.getTargetId()));
+            String content = String.format("build %s for merge request %s", status, note.getMergeRequestTitle());
+            add(form, "description", content);
+        } else if (StringUtils.equals(note.getTargetType(), ResultNote.TARGET_COMMIT)) {
+            add(form, "sha", note.getCommitId());
+            String content = String.format("build %s for commit %s", status, note.getCommitId());
+            add(form, "description", content);
+        }
+        return form;
+    }
+
+    /**
+     * Unlike {@link FormEncodingBuilder#add}, accepts {@code null} values.
+     */
+    private static void add(FormEncodingBuilder form, String name, String value) {
+        form.add(name, StringUtils.defaultString(value));
+    }
+
+    private static int resultCode(String json) {
+        try {
+            JsonElement element = new JsonParser().parse(json);
+            if (element.isJsonObject()) {
+                JsonElement code = ((JsonObject) element).get("code");
+                return code == null || code.isJsonNull() ? -1 : code.getAsInt();
+            }
+        } catch (JsonSyntaxException | IllegalStateException | NumberFormatException e) {
+            LOGGER.log(Level.FINE, "Unexpected result note response: {0}", json);
+        }
+        return -1;
+    }
+
+    private static long retryDelay(int attempt) {
+        long delay = RETRY_DELAY << Math.min(attempt - 1, 16);
+        // jitter, so that notes failed together are not retried together
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private static ScheduledThreadPoolExecutor executor() {
+        ScheduledThreadPoolExecutor pool = executor;
+        if (pool == null) {
+            synchronized (ResultNotePublisher.class) {
+                pool = executor;
+                if (pool == null) {
+                    pool = new ScheduledThreadPoolExecutor(Math.max(1, WORKERS),
+                            new NamingThreadFactory(new DaemonThreadFactory(), "Coding result note publisher"));
+                    pool.setKeepAliveTime(60L, TimeUnit.SECONDS);
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * The client shared with the API calls to the same server, with the timeout of the publisher.
+     * Copies of a client share its connection pool.
+     */
+    private static OkHttpClient httpClient(String url) throws MalformedURLException {
+        OkHttpClient client = Utils.getHttpClient(url).clone();
+        client.setConnectTimeout(TIMEOUT, TimeUnit.MILLISECONDS);
+        client.setReadTimeout(TIMEOUT, TimeUnit.MILLISECONDS);
+        client.setWriteTimeout(TIMEOUT, TimeUnit.MILLISECONDS);
+        return client;
+    }
+
+    @Terminator
+    public static void shutdown() throws InterruptedException {
+        ScheduledThreadPoolExecutor pool = executor;
+        if (pool != null) {
+            pool.shutdown();
+            if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOGGER.log(Level.WARNING, "Result note publisher did not terminate, {0} notes pending", PENDING.get());
+            }
+        }
+    }
+}
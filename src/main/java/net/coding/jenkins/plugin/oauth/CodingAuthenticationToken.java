@@ -25,12 +25,15 @@ package net.coding.jenkins.plugin.oauth;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.squareup.okhttp.OkHttpClient;
-import com.squareup.okhttp.OkUrlFactory;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.Util;
 import hudson.model.Item;
 import hudson.security.Permission;
 import hudson.security.SecurityRealm;
 import jenkins.model.Jenkins;
+import net.coding.api.AsyncRequests;
+import net.coding.api.CircuitOpenException;
+import net.coding.api.CodingApiException;
 import net.coding.api.Coding;
 import net.coding.api.CodingBuilder;
 import net.coding.api.CodingMyself;
@@ -39,28 +42,36 @@ import net.coding.api.CodingPersonSet;
 import net.coding.api.CodingRepository;
 import net.coding.api.CodingTeam;
 import net.coding.api.CodingUser;
-import net.coding.api.extras.OkHttpConnector;
+import net.coding.api.HttpConnector;
+import net.coding.api.PersonCache;
+import net.coding.api.RateLimitHandler;
+import net.coding.api.ResponseCache;
+import net.coding.jenkins.plugin.Utils;
 import org.acegisecurity.GrantedAuthority;
 import org.acegisecurity.GrantedAuthorityImpl;
 import org.acegisecurity.providers.AbstractAuthenticationToken;
 
-import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.MalformedURLException;
-import java.net.Proxy;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
 
 
 /**
@@ -73,6 +84,47 @@ public class CodingAuthenticationToken extends AbstractAuthenticationToken {
 
     private static final long serialVersionUID = 2L;
 
+    private static final String PROPERTY_PREFIX = CodingAuthenticationToken.class.getName();
+
+    /**
+     * Total size in bytes of the API responses kept to revalidate requests with.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int RESPONSE_CACHE_SIZE = Integer.getInteger(PROPERTY_PREFIX + ".responseCacheSize", 4 * 1024 * 1024);
+
+    /**
+     * Whether the cached API responses are also written under {@code $JENKINS_HOME}, to be
+     * revalidated instead of downloaded again after a restart. Off by default, as the responses
+     * hold e-mails, profiles and private repository lists in plain text, which would end up in
+     * the backups of {@code $JENKINS_HOME}.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static boolean RESPONSE_CACHE_ON_DISK = Boolean.getBoolean(PROPERTY_PREFIX + ".responseCacheOnDisk");
+
+    private static final String RESPONSE_CACHE_DIR = "coding-webhook/api-cache";
+
+    /**
+     * Whether slow API requests are hedged with a second one, see {@link CodingBuilder#withHedgedRequests(boolean)}.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static boolean HEDGED_REQUESTS = Boolean.getBoolean(PROPERTY_PREFIX + ".hedgedRequests");
+
+    /**
+     * Number of users and organizations kept per Coding server.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int PERSON_CACHE_SIZE = Integer.getInteger(PROPERTY_PREFIX + ".personCacheSize", PersonCache.DEFAULT_SIZE);
+
+    /**
+     * Minutes a user or organization is kept.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int PERSON_CACHE_TTL = Integer.getInteger(PROPERTY_PREFIX + ".personCacheTtl", PersonCache.DEFAULT_TTL);
+
+    private static ResponseCache responseCache;
+
+    private static final ConcurrentMap<String, PersonCache> personCaches = new ConcurrentHashMap<>();
+
     private final String accessToken;
     private final String codingServer;
     private final String userName;
@@ -82,23 +134,33 @@ public class CodingAuthenticationToken extends AbstractAuthenticationToken {
     private transient CodingSecurityRealm myRealm = null;
 
     public static final TimeUnit CACHE_EXPIRY = TimeUnit.HOURS;
+
+    /**
+     * Minutes after which the user, organization and repository caches are reloaded in the background,
+     * while the current value is still served, up to {@link #CACHE_EXPIRY}.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int CACHE_REFRESH_AFTER = Integer.getInteger(PROPERTY_PREFIX + ".cacheRefreshAfter", 15);
+
+    /**
+     * Minutes an expired cache entry is still served when it can't be reloaded from Coding.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int CACHE_GRACE_PERIOD = Integer.getInteger(PROPERTY_PREFIX + ".cacheGracePeriod", 240);
+
     /**
      * Cache for faster organization based security
      */
-    private static final Cache<String, Set<String>> userOrganizationCache =
-            CacheBuilder.newBuilder().expireAfterWrite(1, CACHE_EXPIRY).build();
+    private static final RefreshingCache<Set<String>> userOrganizationCache = newRefreshingCache();
 
-    private static final Cache<String, Set<String>> repositoriesByUserCache =
-            CacheBuilder.newBuilder().expireAfterWrite(1, CACHE_EXPIRY).build();
+    private static final RefreshingCache<Set<String>> repositoriesByUserCache = newRefreshingCache();
 
-    private static final Cache<String, WrappedCodingUser> usersByIdCache =
-            CacheBuilder.newBuilder().expireAfterWrite(1, CACHE_EXPIRY).build();
+    private static final RefreshingCache<WrappedCodingUser> usersByIdCache = newRefreshingCache();
 
     private static final Cache<String, WrappedCodingMyself> usersByTokenCache =
             CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.MINUTES).build();
 
-    private static final Cache<String, Map<String, Set<CodingTeam>>> userTeamsCache =
-            CacheBuilder.newBuilder().expireAfterWrite(1, CACHE_EXPIRY).build();
+    private static final RefreshingCache<Map<String, Set<CodingTeam>>> userTeamsCache = newRefreshingCache();
 
     /**
      * This cache is for repositories and is explicitly _not_ static because we
@@ -114,6 +176,35 @@ public class CodingAuthenticationToken extends AbstractAuthenticationToken {
     private final Cache<String, RepoRights> repositoryCache =
             CacheBuilder.newBuilder().expireAfterWrite(1, CACHE_EXPIRY).build();
 
+    /**
+     * Minutes a repository that doesn't exist or that the user can't see is remembered as such, kept short
+     * so that a newly created repository or a newly granted access shows up soon.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int MISSING_REPOSITORY_TTL = Integer.getInteger(PROPERTY_PREFIX + ".missingRepositoryTtl", 5);
+
+    /**
+     * Comma separated codes of the Coding API envelope that mean the repository doesn't exist or that the
+     * user can't see it, on top of a {@code 404} and of an envelope message like {@code project_not_exists}.
+     * Other failures like throttling or server errors are never remembered as a missing repository.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static String MISSING_REPOSITORY_CODES = System.getProperty(PROPERTY_PREFIX + ".missingRepositoryCodes", "1100");
+
+    /**
+     * Repositories of the user that {@link #loadRepository(String)} couldn't find, per-user like
+     * {@link #repositoryCache}.
+     */
+    private final Cache<String, Boolean> missingRepositoryCache =
+            CacheBuilder.newBuilder().expireAfterWrite(MISSING_REPOSITORY_TTL, TimeUnit.MINUTES).build();
+
+    /**
+     * Repositories {@link #loadRepository(String)} failed to load and already warned about, so that a
+     * failing repository doesn't flood the log from the permission checks.
+     */
+    private final Cache<String, Boolean> warnedRepositoryCache =
+            CacheBuilder.newBuilder().expireAfterWrite(1, CACHE_EXPIRY).build();
+
     private final List<GrantedAuthority> authorities = new ArrayList<>();
 
     private static final WrappedCodingUser UNKNOWN_USER = new WrappedCodingUser(null);
@@ -253,6 +344,7 @@ public class CodingAuthenticationToken extends AbstractAuthenticationToken {
         usersByIdCache.invalidateAll();
         usersByTokenCache.invalidateAll();
         userTeamsCache.invalidateAll();
+        PermissionDecisionCache.invalidateAll();
     }
 
     /**
@@ -273,42 +365,68 @@ public class CodingAuthenticationToken extends AbstractAuthenticationToken {
 
     public Coding getCoding() throws IOException {
         if (this.coding == null) {
-
-            String host;
+            HttpConnector connector;
             try {
-                host = new URL(this.codingServer).getHost();
+                connector = Utils.getConnector(this.codingServer);
             } catch (MalformedURLException e) {
                 throw new IOException("Invalid Coding API URL: " + this.codingServer, e);
             }
 
-            OkHttpClient client = new OkHttpClient().setProxy(getProxy(host));
-
             this.coding = CodingBuilder.fromEnvironment()
                     .withEndpoint(this.codingServer)
                     .withOAuthToken(this.accessToken)
-//                    .withRateLimitHandler(RateLimitHandler.FAIL)
-                    .withConnector(new OkHttpConnector(new OkUrlFactory(client)))
+                    .withRateLimitHandler(RateLimitHandler.ADAPTIVE)
+                    .withConnector(connector)
+                    .withResponseCache(getResponseCache())
+                    .withHedgedRequests(HEDGED_REQUESTS)
+                    .withPersonCache(getPersonCache(this.codingServer))
                     .build();
         }
         return coding;
     }
 
     /**
-     * Uses proxy if configured on pluginManager/advanced page
-     *
-     * @param host Coding's hostname to build proxy to
-     *
-     * @return proxy to use it in connector. Should not be null as it can lead to unexpected behaviour
+     * Response cache shared by the clients of all users, entries are keyed by token.
      */
-    @Nonnull
-    private static Proxy getProxy(@Nonnull String host) {
-        Jenkins jenkins = Jenkins.getInstance();
+    public static synchronized ResponseCache getResponseCache() {
+        if (responseCache == null) {
+            File directory = null;
+            Jenkins jenkins = Jenkins.getInstance();
+            if (jenkins != null) {
+                directory = new File(jenkins.getRootDir(), RESPONSE_CACHE_DIR);
+                if (!RESPONSE_CACHE_ON_DISK) {
+                    // written by earlier versions, where the disk tier was on by default
+                    try {
+                        Util.deleteRecursive(directory);
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Failed to delete " + directory, e);
+                    }
+                    directory = null;
+                }
+            }
+            responseCache = new ResponseCache(RESPONSE_CACHE_SIZE, directory);
+        }
+        return responseCache;
+    }
 
-        if (jenkins.proxy == null) {
-            return Proxy.NO_PROXY;
-        } else {
-            return jenkins.proxy.createProxy(host);
+    private static <V> RefreshingCache<V> newRefreshingCache() {
+        return new RefreshingCache<>(CACHE_REFRESH_AFTER, CACHE_EXPIRY.toMinutes(1), CACHE_GRACE_PERIOD,
+                TimeUnit.MINUTES);
+    }
+
+    /**
+     * Cache of users and organizations shared by the clients of all users of a Coding server.
+     */
+    public static PersonCache getPersonCache(String codingServer) {
+        PersonCache cache = personCaches.get(codingServer);
+        if (cache == null) {
+            PersonCache created = new PersonCache(PERSON_CACHE_SIZE, PERSON_CACHE_TTL, TimeUnit.MINUTES);
+            cache = personCaches.putIfAbsent(codingServer, created);
+            if (cache == null) {
+                cache = created;
+            }
         }
+        return cache;
     }
 
     @Override
@@ -370,10 +488,28 @@ public class CodingAuthenticationToken extends AbstractAuthenticationToken {
     }
 
     public boolean hasRepositoryPermission(String repositoryName, Permission permission) {
+        return hasRepositoryPermission(repositoryName, permission, RepositoryPermissionStrategy.ENUMERATE);
+    }
+
+    public boolean hasRepositoryPermission(String repositoryName, Permission permission,
+                                           RepositoryPermissionStrategy strategy) {
         LOGGER.log(Level.FINEST, "Checking for permission: " + permission + " on repo: " + repositoryName + " for user: " + this.userName);
-        boolean isRepoOfMine = myRepositories().contains(repositoryName);
-        if (isRepoOfMine) {
-          return true;
+        switch (strategy) {
+            case ENUMERATE:
+                if (myRepositories().contains(repositoryName)) {
+                    return true;
+                }
+                break;
+            case PROBE_AND_WARMUP:
+                Set<String> repositoryNames = repositoriesByUserCache.getIfPresent(getName());
+                if (repositoryNames == null) {
+                    repositoriesByUserCache.prefetch(getName(), myRepositoriesLoader());
+                } else if (repositoryNames.contains(repositoryName)) {
+                    return true;
+                }
+                break;
+            default:
+                break;
         }
         // This is not my repository, nor is it a repository of an organization I belong to.
         // Check what rights I have on the coding repo.
@@ -399,22 +535,7 @@ public class CodingAuthenticationToken extends AbstractAuthenticationToken {
 
     public Set<String> myRepositories() {
         try {
-            return repositoriesByUserCache.get(getName(),
-                new Callable<Set<String>>() {
-                    @Override
-                    public Set<String> call() throws Exception {
-                        List<CodingRepository> userRepositoryList = getMyself().listRepositories().asList();
-                        Set<String> repositoryNames = listToNames(userRepositoryList);
-                        CodingPersonSet<CodingOrganization> organizations = getMyself().getAllOrganizations();
-                        for (CodingOrganization organization : organizations) {
-                            List<CodingRepository> orgRepositoryList = organization.listRepositories().asList();
-                            Set<String> orgRepositoryNames = listToNames(orgRepositoryList);
-                            repositoryNames.addAll(orgRepositoryNames);
-                        }
-                        return repositoryNames;
-                    }
-                }
-            );
+            return repositoriesByUserCache.get(getName(), myRepositoriesLoader());
         } catch (ExecutionException e) {
             LOGGER.log(Level.SEVERE, "an exception was thrown", e);
             throw new RuntimeException("authorization failed for user = "
@@ -422,7 +543,39 @@ public class CodingAuthenticationToken extends AbstractAuthenticationToken {
         }
     }
 
-    public Set<String> listToNames(Collection<CodingRepository> respositories) throws IOException {
+    private Callable<Set<String>> myRepositoriesLoader() {
+        return new Callable<Set<String>>() {
+            @Override
+            public Set<String> call() throws Exception {
+                // the listings of the user and of each organization are independent, so they are
+                // walked concurrently, keeping only the names of each page
+                List<CompletableFuture<Set<String>>> listings = new ArrayList<>();
+                listings.add(getMyself().listRepositoriesAsync(REPOSITORY_NAMES));
+                CodingPersonSet<CodingOrganization> organizations = getMyself().getAllOrganizations();
+                for (CodingOrganization organization : organizations) {
+                    listings.add(organization.listRepositoriesAsync(REPOSITORY_NAMES));
+                }
+                Set<String> repositoryNames = new HashSet<>();
+                for (CompletableFuture<Set<String>> listing : listings) {
+                    repositoryNames.addAll(AsyncRequests.await(listing));
+                }
+                return repositoryNames;
+            }
+        };
+    }
+
+    /**
+     * Collects the full names of repositories, like {@link #listToNames(Iterable)}.
+     */
+    private static final Collector<CodingRepository, ?, Set<String>> REPOSITORY_NAMES = Collectors.mapping(
+            new Function<CodingRepository, String>() {
+                @Override
+                public String apply(CodingRepository repository) {
+                    return repository.getOwner().getLogin() + "/" + repository.getName();
+                }
+            }, Collectors.<String>toSet());
+
+    public Set<String> listToNames(Iterable<CodingRepository> respositories) throws IOException {
         Set<String> names = new HashSet<String>();
         for (CodingRepository repository : respositories) {
             String ownerName = repository.getOwner().getLogin();
@@ -440,19 +593,28 @@ public class CodingAuthenticationToken extends AbstractAuthenticationToken {
     private static final Logger LOGGER = Logger
             .getLogger(CodingAuthenticationToken.class.getName());
 
-    public CodingUser loadUser(String username) throws IOException {
+    public CodingUser loadUser(final String username) throws IOException {
         WrappedCodingUser user;
-        try {
-            user = usersByIdCache.getIfPresent(username);
-            if (coding != null && user == null && isAuthenticated()) {
-                CodingUser ghUser = getCoding().getUser(username);
-                user = new WrappedCodingUser(ghUser);
-                usersByIdCache.put(username, user);
+        if (coding != null && isAuthenticated()) {
+            try {
+                user = usersByIdCache.get(username, new Callable<WrappedCodingUser>() {
+                    @Override
+                    public WrappedCodingUser call() throws IOException {
+                        try {
+                            return new WrappedCodingUser(getCoding().getUser(username));
+                        } catch (FileNotFoundException | CodingApiException e) {
+                            LOGGER.log(Level.FINEST, e.getMessage(), e);
+                            return UNKNOWN_USER;
+                        }
+                    }
+                });
+            } catch (ExecutionException e) {
+                // not known to be unknown, ask again once Coding is back
+                LOGGER.log(Level.FINE, "Failed to load user " + username, e.getCause());
+                return null;
             }
-        } catch (IOException e) {
-            LOGGER.log(Level.FINEST, e.getMessage(), e);
-            user = UNKNOWN_USER;
-            usersByIdCache.put(username, UNKNOWN_USER);
+        } else {
+            user = usersByIdCache.getIfPresent(username);
         }
         return user != null ? user.user : null;
     }
@@ -466,6 +628,9 @@ public class CodingAuthenticationToken extends AbstractAuthenticationToken {
                 me = new WrappedCodingMyself(ghMyself);
                 usersByTokenCache.put(token, me);
             }
+        } catch (CircuitOpenException e) {
+            // Coding is unavailable, not the token invalid, so it isn't cached as unknown
+            throw e;
         } catch (IOException e) {
             LOGGER.log(Level.FINEST, e.getMessage(), e);
             me = UNKNOWN_TOKEN;
@@ -489,26 +654,62 @@ public class CodingAuthenticationToken extends AbstractAuthenticationToken {
     public RepoRights loadRepository(final String repositoryName) {
       try {
           if (coding != null && isAuthenticated() && (myRealm.hasScope("repo") || myRealm.hasScope("public_repo"))) {
+              if (missingRepositoryCache.getIfPresent(repositoryName) != null) {
+                  return new RepoRights(null);
+              }
               return repositoryCache.get(repositoryName,
                   new Callable<RepoRights>() {
                       @Override
                       public RepoRights call() throws Exception {
-                          throw new UnsupportedOperationException("");
-//                          CodingRepository repo = getCoding().getRepository(repositoryName);
-//                          return new RepoRights(repo);
+                          try {
+                              return new RepoRights(getCoding().getRepository(repositoryName));
+                          } catch (IOException e) {
+                              if (isMissingRepository(e)) {
+                                  // not cached in repositoryCache, which would keep it for an hour
+                                  LOGGER.log(Level.FINEST, e.getMessage(), e);
+                                  missingRepositoryCache.put(repositoryName, Boolean.TRUE);
+                              }
+                              throw e;
+                          }
                       }
                   }
               );
           }
       } catch (Exception e) {
-          LOGGER.log(Level.SEVERE, "an exception was thrown", e);
-          LOGGER.log(Level.WARNING,
-              "Looks like a bad Coding URL OR the Jenkins user {0} does not have access to the repository {1}. May need to add 'repo' or 'public_repo' to the list of oauth scopes requested.",
-              new Object[] { this.userName, repositoryName });
+          if (missingRepositoryCache.getIfPresent(repositoryName) != null) {
+              return new RepoRights(null);
+          }
+          boolean warned = warnedRepositoryCache.asMap().putIfAbsent(repositoryName, Boolean.TRUE) != null;
+          LOGGER.log(warned ? Level.FINE : Level.WARNING,
+              "Looks like a bad Coding URL OR the Jenkins user " + this.userName + " does not have access to the repository " + repositoryName + ". May need to add 'repo' or 'public_repo' to the list of oauth scopes requested.",
+              e);
       }
       return null;
     }
 
+    /**
+     * Whether the failure to load a repository means it doesn't exist or the user can't see it, see
+     * {@link #MISSING_REPOSITORY_CODES}.
+     */
+    static boolean isMissingRepository(IOException e) {
+        if (e instanceof FileNotFoundException) {
+            return true;
+        }
+        if (e instanceof CodingApiException) {
+            CodingApiException apiException = (CodingApiException) e;
+            String code = Integer.toString(apiException.getCode());
+            for (String missing : MISSING_REPOSITORY_CODES.split(",")) {
+                if (missing.trim().equals(code)) {
+                    return true;
+                }
+            }
+            // the message is keyed by the error, like {"project_not_exists": "..."}
+            String message = apiException.getApiMessage();
+            return message != null && message.matches("(?s)\\{\\s*\"[a-z_]*not_exists?\".*");
+        }
+        return false;
+    }
+
     public CodingTeam loadTeam(String organization, String team) {
         try {
             CodingOrganization org = loadOrganization(organization);
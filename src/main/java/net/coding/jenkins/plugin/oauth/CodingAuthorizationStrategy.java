@@ -32,6 +32,7 @@ import hudson.security.ACL;
 import hudson.security.AuthorizationStrategy;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import javax.annotation.Nonnull;
 import java.util.Collection;
@@ -65,6 +66,7 @@ public class CodingAuthorizationStrategy extends AuthorizationStrategy {
                 allowCcTrayPermission,
                 allowAnonymousReadPermission,
                 allowAnonymousJobStatusPermission);
+        PermissionDecisionCache.invalidateAll();
     }
 
     private final CodingRequireOrganizationMembershipACL rootACL;
@@ -189,6 +191,20 @@ public class CodingAuthorizationStrategy extends AuthorizationStrategy {
         return rootACL.isAllowAnonymousJobStatusPermission();
     }
 
+    /**
+     * @return repositoryPermissionStrategy
+     * @see CodingRequireOrganizationMembershipACL#getRepositoryPermissionStrategy()
+     */
+    public RepositoryPermissionStrategy getRepositoryPermissionStrategy() {
+        return rootACL.getRepositoryPermissionStrategy();
+    }
+
+    @DataBoundSetter
+    public void setRepositoryPermissionStrategy(RepositoryPermissionStrategy repositoryPermissionStrategy) {
+        rootACL.setRepositoryPermissionStrategy(repositoryPermissionStrategy);
+        PermissionDecisionCache.invalidateAll();
+    }
+
     /**
      * Compare an object against this instance for equivalence.
      * @param object An object to campare this instance to.
@@ -201,6 +217,7 @@ public class CodingAuthorizationStrategy extends AuthorizationStrategy {
             return this.getOrganizationNames().equals(obj.getOrganizationNames()) &&
                 this.getAdminUserNames().equals(obj.getAdminUserNames()) &&
                 this.isUseRepositoryPermissions() == obj.isUseRepositoryPermissions() &&
+                this.getRepositoryPermissionStrategy() == obj.getRepositoryPermissionStrategy() &&
                 this.isAuthenticatedUserCreateJobPermission() == obj.isAuthenticatedUserCreateJobPermission() &&
                 this.isAuthenticatedUserReadPermission() == obj.isAuthenticatedUserReadPermission() &&
                 this.isAllowCodingWebHookPermission() == obj.isAllowCodingWebHookPermission() &&
@@ -24,16 +24,10 @@
 package net.coding.jenkins.plugin.oauth;
 
 import hudson.model.AbstractItem;
-import hudson.model.AbstractProject;
-import hudson.model.Describable;
 import hudson.model.Item;
-import hudson.plugins.git.GitSCM;
-import hudson.plugins.git.UserRemoteConfig;
 import hudson.security.ACL;
 import hudson.security.Permission;
-import jenkins.branch.MultiBranchProject;
 import jenkins.model.Jenkins;
-import jenkins.scm.api.SCMSource;
 import org.acegisecurity.Authentication;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
@@ -63,6 +57,7 @@ public class CodingRequireOrganizationMembershipACL extends ACL {
     private final boolean allowAnonymousReadPermission;
     private final boolean allowAnonymousJobStatusPermission;
     private final AbstractItem item;
+    private RepositoryPermissionStrategy repositoryPermissionStrategy;
 
     /*
      * (non-Javadoc)
@@ -79,67 +74,15 @@ public class CodingRequireOrganizationMembershipACL extends ACL {
             CodingAuthenticationToken authenticationToken = (CodingAuthenticationToken) a;
 
             String candidateName = a.getName();
-
-            if (adminUserNameList.contains(candidateName)) {
-                // if they are an admin then they have permission
-                log.finest("Granting Admin rights to user " + candidateName);
-                return true;
-            }
-
-            if (this.item != null) {
-                if (useRepositoryPermissions) {
-                    if(hasRepositoryPermission(authenticationToken, permission)) {
-                        log.finest("Granting Authenticated User " + permission.getId() +
-                            " permission on project " + item.getName() +
-                            "to user " + candidateName);
-                        return true;
-                    }
-                } else {
-                    if (authenticatedUserReadPermission) {
-                        if (checkReadPermission(permission)) {
-                            log.finest("Granting Authenticated User read permission " +
-                                "on project " + item.getName() +
-                                "to user " + candidateName);
-                            return true;
-                        }
-                    }
-                }
-            } else if (authenticatedUserReadPermission) {
-                if (checkReadPermission(permission)) {
-                    // if we support authenticated read and this is a read
-                    // request we allow it
-                    log.finest("Granting Authenticated User read permission to user "
-                            + candidateName);
-                return true;
-                }
-            }
-
-            if (authenticatedUserCreateJobPermission && permission.equals(Item.CREATE)) {
-                return true;
+            String itemName = item == null ? null : item.getFullName();
+            Boolean decision = PermissionDecisionCache.get(candidateName, itemName, permission);
+            if (decision != null) {
+                return decision;
             }
-
-            for (String organizationName : this.organizationNameList) {
-                if (authenticationToken.hasOrganizationPermission(
-                        candidateName, organizationName)) {
-
-                    String[] parts = permission.getId().split("\\.");
-
-                    String test = parts[parts.length - 1].toLowerCase();
-
-                    if (checkReadPermission(permission)
-                            || testBuildPermission(permission)) {
-                        // check the permission
-
-                        log.finest("Granting READ and BUILD rights to user "
-                                + candidateName + " a member of "
-                                + organizationName);
-                        return true;
-                    }
-                }
-            }
-
-            // no match.
-            return false;
+            long epoch = PermissionDecisionCache.epoch();
+            boolean granted = hasPermission(authenticationToken, candidateName, permission);
+            PermissionDecisionCache.put(candidateName, itemName, permission, granted, epoch);
+            return granted;
         } else {
             String authenticatedUserName = a.getName();
             if (authenticatedUserName == null) {
@@ -189,6 +132,66 @@ public class CodingRequireOrganizationMembershipACL extends ACL {
         }
     }
 
+    private boolean hasPermission(CodingAuthenticationToken authenticationToken, String candidateName,
+                                  Permission permission) {
+        if (adminUserNameList.contains(candidateName)) {
+            // if they are an admin then they have permission
+            log.finest("Granting Admin rights to user " + candidateName);
+            return true;
+        }
+
+        if (this.item != null) {
+            if (useRepositoryPermissions) {
+                if(hasRepositoryPermission(authenticationToken, permission)) {
+                    log.finest("Granting Authenticated User " + permission.getId() +
+                        " permission on project " + item.getName() +
+                        "to user " + candidateName);
+                    return true;
+                }
+            } else {
+                if (authenticatedUserReadPermission) {
+                    if (checkReadPermission(permission)) {
+                        log.finest("Granting Authenticated User read permission " +
+                            "on project " + item.getName() +
+                            "to user " + candidateName);
+                        return true;
+                    }
+                }
+            }
+        } else if (authenticatedUserReadPermission) {
+            if (checkReadPermission(permission)) {
+                // if we support authenticated read and this is a read
+                // request we allow it
+                log.finest("Granting Authenticated User read permission to user "
+                        + candidateName);
+            return true;
+            }
+        }
+
+        if (authenticatedUserCreateJobPermission && permission.equals(Item.CREATE)) {
+            return true;
+        }
+
+        for (String organizationName : this.organizationNameList) {
+            if (authenticationToken.hasOrganizationPermission(
+                    candidateName, organizationName)) {
+
+                if (checkReadPermission(permission)
+                        || testBuildPermission(permission)) {
+                    // check the permission
+
+                    log.finest("Granting READ and BUILD rights to user "
+                            + candidateName + " a member of "
+                            + organizationName);
+                    return true;
+                }
+            }
+        }
+
+        // no match.
+        return false;
+    }
+
     private boolean currentUriPathEquals( String specificPath ) {
         Jenkins jenkins = Jenkins.getInstance();
         if (jenkins == null) {
@@ -265,37 +268,20 @@ public class CodingRequireOrganizationMembershipACL extends ACL {
                 authenticationToken.isPublicRepository(repositoryName)) {
             return true;
         } else {
-            return authenticationToken.hasRepositoryPermission(repositoryName, permission);
+            return authenticationToken.hasRepositoryPermission(repositoryName, permission,
+                    getRepositoryPermissionStrategy());
         }
     }
 
     private String getRepositoryName() {
-        String repositoryName = null;
-        String repoUrl = null;
-        Describable scm = null;
-        if (this.item instanceof MultiBranchProject) {
-            MultiBranchProject project = (MultiBranchProject) item;
-            scm = (SCMSource) project.getSCMSources().get(0);
-        } else if (this.item instanceof AbstractProject) {
-            AbstractProject project = (AbstractProject) item;
-            scm = project.getScm();
+        if (item == null) {
+            return null;
         }
-        if (scm instanceof GitSCM) {
-            GitSCM git = (GitSCM) scm;
-            List<UserRemoteConfig> userRemoteConfigs = git.getUserRemoteConfigs();
-            if (!userRemoteConfigs.isEmpty()) {
-                repoUrl = userRemoteConfigs.get(0).getUrl();
-            }
+        CodingRepositoryName codingRepositoryName = RepositoryNameIndex.get().getRepositoryName(item);
+        if (codingRepositoryName == null) {
+            return null;
         }
-        if (repoUrl != null) {
-            CodingRepositoryName githubRepositoryName =
-                CodingRepositoryName.create(repoUrl);
-            if (githubRepositoryName != null) {
-                repositoryName = githubRepositoryName.userName + "/"
-                    + githubRepositoryName.repositoryName;
-            }
-        }
-        return repositoryName;
+        return codingRepositoryName.userName + "/" + codingRepositoryName.repositoryName;
     }
 
     public CodingRequireOrganizationMembershipACL(String adminUserNames,
@@ -339,7 +325,7 @@ public class CodingRequireOrganizationMembershipACL extends ACL {
     }
 
     public CodingRequireOrganizationMembershipACL cloneForProject(AbstractItem item) {
-      return new CodingRequireOrganizationMembershipACL(
+      CodingRequireOrganizationMembershipACL acl = new CodingRequireOrganizationMembershipACL(
           this.adminUserNameList,
           this.organizationNameList,
           this.authenticatedUserReadPermission,
@@ -350,6 +336,8 @@ public class CodingRequireOrganizationMembershipACL extends ACL {
           this.allowAnonymousReadPermission,
           this.allowAnonymousJobStatusPermission,
           item);
+      acl.repositoryPermissionStrategy = this.repositoryPermissionStrategy;
+      return acl;
     }
 
     public CodingRequireOrganizationMembershipACL(List<String> adminUserNameList,
@@ -414,4 +402,16 @@ public class CodingRequireOrganizationMembershipACL extends ACL {
     public boolean isAllowAnonymousJobStatusPermission() {
         return allowAnonymousJobStatusPermission;
     }
+
+    /**
+     * @return the strategy to check repository permissions with, {@link RepositoryPermissionStrategy#ENUMERATE}
+     * unless configured otherwise, as configurations saved before the setting existed expect
+     */
+    public RepositoryPermissionStrategy getRepositoryPermissionStrategy() {
+        return repositoryPermissionStrategy == null ? RepositoryPermissionStrategy.ENUMERATE : repositoryPermissionStrategy;
+    }
+
+    void setRepositoryPermissionStrategy(RepositoryPermissionStrategy repositoryPermissionStrategy) {
+        this.repositoryPermissionStrategy = repositoryPermissionStrategy;
+    }
 }
@@ -24,6 +24,8 @@
 package net.coding.jenkins.plugin.oauth;
 
 import com.google.gson.Gson;
+import com.squareup.okhttp.FormEncodingBuilder;
+import com.squareup.okhttp.Request;
 import com.thoughtworks.xstream.converters.ConversionException;
 import com.thoughtworks.xstream.converters.Converter;
 import com.thoughtworks.xstream.converters.MarshallingContext;
@@ -32,7 +34,6 @@ import com.thoughtworks.xstream.io.HierarchicalStreamReader;
 import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
 import hudson.Extension;
 import hudson.FilePath;
-import hudson.ProxyConfiguration;
 import hudson.Util;
 import hudson.cli.CLICommand;
 import hudson.model.Descriptor;
@@ -51,6 +52,7 @@ import net.coding.api.CodingEmail;
 import net.coding.api.CodingMyself;
 import net.coding.api.CodingOrganization;
 import net.coding.api.CodingTeam;
+import net.coding.jenkins.plugin.Utils;
 import org.acegisecurity.Authentication;
 import org.acegisecurity.AuthenticationException;
 import org.acegisecurity.AuthenticationManager;
@@ -60,20 +62,8 @@ import org.acegisecurity.providers.UsernamePasswordAuthenticationToken;
 import org.acegisecurity.userdetails.UserDetails;
 import org.acegisecurity.userdetails.UserDetailsService;
 import org.acegisecurity.userdetails.UsernameNotFoundException;
-import org.apache.commons.httpclient.URIException;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.builder.HashCodeBuilder;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
-import org.apache.http.NameValuePair;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.util.EntityUtils;
 import org.kohsuke.args4j.Option;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.Header;
@@ -88,10 +78,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.Console;
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
@@ -426,41 +413,31 @@ public class CodingSecurityRealm extends AbstractPasswordBasedSecurityRealm impl
 
     @Nullable
     private String getAccessToken(@Nonnull String code) throws IOException {
-        String content;
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            // https://coding.net/api
-            HttpPost httpost = new HttpPost(codingWebUri + "/api/oauth/access_token?");
-            ArrayList<NameValuePair> entityList = new ArrayList<>(3);
-            entityList.add(new BasicNameValuePair("client_id", clientID));
-            entityList.add(new BasicNameValuePair("client_secret", clientSecret.getPlainText()));
-            entityList.add(new BasicNameValuePair("code", code));
-
-            String team = "private";
-            try {
-                URI uri = new URI(codingWebUri);
-                String host = uri.getHost();
-                // real enterprise
-                if (StringUtils.endsWithIgnoreCase(host, ".coding.net") ||
-                        StringUtils.equalsIgnoreCase(host, "coding.net")) {
-                    team = null;
-                }
-            } catch (Exception e) {
-                LOGGER.fine("error to parse team from webUrl " + e);
-            }
-            if (team != null) {
-                entityList.add(new BasicNameValuePair("team", team));
-            }
-            httpost.setEntity(new UrlEncodedFormEntity(entityList));
-            HttpHost proxy = getProxy(httpost);
-            if (proxy != null) {
-                RequestConfig requestConfig = RequestConfig.custom().setProxy(proxy).build();
-                httpost.setConfig(requestConfig);
+        // https://coding.net/api
+        String url = codingWebUri + "/api/oauth/access_token?";
+        FormEncodingBuilder form = new FormEncodingBuilder()
+                .add("client_id", clientID)
+                .add("client_secret", clientSecret.getPlainText())
+                .add("code", code);
+
+        String team = "private";
+        try {
+            URI uri = new URI(codingWebUri);
+            String host = uri.getHost();
+            // real enterprise
+            if (StringUtils.endsWithIgnoreCase(host, ".coding.net") ||
+                    StringUtils.equalsIgnoreCase(host, "coding.net")) {
+                team = null;
             }
-            org.apache.http.HttpResponse response = httpClient.execute(httpost);
-            HttpEntity entity = response.getEntity();
-            content = EntityUtils.toString(entity);
-
+        } catch (Exception e) {
+            LOGGER.fine("error to parse team from webUrl " + e);
         }
+        if (team != null) {
+            form.add("team", team);
+        }
+        Request request = new Request.Builder().url(url).post(form.build()).build();
+        // the client is shared with the API calls to the same server, see ConnectorRegistry
+        String content = Utils.getHttpClient(url).newCall(request).execute().body().string();
         try {
             Map json = new Gson().fromJson(content, Map.class);
             return (String) json.get("access_token");
@@ -470,26 +447,6 @@ public class CodingSecurityRealm extends AbstractPasswordBasedSecurityRealm impl
         return null;
     }
 
-    /**
-     * Returns the proxy to be used when connecting to the given URI.
-     */
-    private HttpHost getProxy(HttpUriRequest method) throws URIException {
-        ProxyConfiguration proxy = getJenkins().proxy;
-        if (proxy == null) return null;    // defensive check
-
-        Proxy p = proxy.createProxy(method.getURI().getHost());
-        switch (p.type()) {
-            case DIRECT:
-                return null;        // no proxy
-            case HTTP:
-                InetSocketAddress sa = (InetSocketAddress) p.address();
-                return new HttpHost(sa.getHostName(), sa.getPort());
-            case SOCKS:
-            default:
-                return null;        // not supported yet
-        }
-    }
-
     /*
      * (non-Javadoc)
      *
@@ -0,0 +1,146 @@
+/**
+ *  The MIT License
+ *
+ * Copyright (c) 2011 Michael O'Cleirigh
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coding.jenkins.plugin.oauth;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.security.Permission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the answers of {@link CodingRequireOrganizationMembershipACL} for authenticated users, as
+ * Jenkins asks the same question many times while rendering a single page.
+ *
+ * <p>
+ * Answers are tagged with a global epoch. Bumping it with {@link #invalidateAll()} outdates every answer
+ * at once: the strategy calls it when it is reconfigured, {@link CodingAuthenticationToken#clearCaches()}
+ * when the Coding data goes away, and {@link RepositoryNameIndex} when an item it indexed changes.
+ * Answers also expire after a short while, as the organizations and repositories they were based on are
+ * refreshed in the background.
+ */
+final class PermissionDecisionCache {
+    private static final String PROPERTY_PREFIX = PermissionDecisionCache.class.getName();
+
+    /**
+     * Maximum number of (user, item, permission) answers kept.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int MAXIMUM_SIZE = Integer.getInteger(PROPERTY_PREFIX + ".maximumSize", 10000);
+
+    /**
+     * Seconds an answer is kept.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int TTL = Integer.getInteger(PROPERTY_PREFIX + ".ttl", 60);
+
+    private static final AtomicLong EPOCH = new AtomicLong();
+
+    private static final Cache<Key, Decision> DECISIONS = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(TTL, TimeUnit.SECONDS)
+            .build();
+
+    private PermissionDecisionCache() { }
+
+    /**
+     * @param item full name of the item, or {@code null} for the root ACL
+     * @return the answer, or {@code null} if it isn't known in the current epoch
+     */
+    static Boolean get(String principal, String item, Permission permission) {
+        Decision decision = DECISIONS.getIfPresent(new Key(principal, item, permission));
+        if (decision == null || decision.epoch != EPOCH.get()) {
+            return null;
+        }
+        return decision.granted;
+    }
+
+    /**
+     * @param epoch value of {@link #epoch()} before the answer was worked out, so that an answer based
+     *              on data invalidated in the meantime isn't kept
+     */
+    static void put(String principal, String item, Permission permission, boolean granted, long epoch) {
+        if (epoch == EPOCH.get()) {
+            DECISIONS.put(new Key(principal, item, permission), new Decision(epoch, granted));
+        }
+    }
+
+    static long epoch() {
+        return EPOCH.get();
+    }
+
+    static void invalidateAll() {
+        EPOCH.incrementAndGet();
+        DECISIONS.invalidateAll();
+    }
+
+    private static final class Key {
+        private final String principal;
+        private final String item;
+        private final Permission permission;
+        private final int hash;
+
+        Key(String principal, String item, Permission permission) {
+            this.principal = principal;
+            this.item = item;
+            this.permission = permission;
+            int h = principal.hashCode();
+            h = 31 * h + (item == null ? 0 : item.hashCode());
+            h = 31 * h + permission.hashCode();
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash
+                    && principal.equals(other.principal)
+                    && (item == null ? other.item == null : item.equals(other.item))
+                    && permission == other.permission;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Decision {
+        final long epoch;
+        final boolean granted;
+
+        Decision(long epoch, boolean granted) {
+            this.epoch = epoch;
+            this.granted = granted;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ *  The MIT License
+ *
+ * Copyright (c) 2011 Michael O'Cleirigh
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coding.jenkins.plugin.oauth;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import net.coding.api.RateLimitHandler;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache that reloads its entries in the background once they get old, instead of making the next caller
+ * wait for the reload.
+ *
+ * <p>
+ * An entry younger than {@code refreshAfter} is served as is. Up to {@code expireAfter}, it is still
+ * served while it is reloaded on a small shared pool. An older entry is reloaded by the caller, and if
+ * that fails, it is still served for up to {@code grace} more, so that a Coding outage doesn't turn into
+ * denied permissions. Concurrent loads of the same key share one call of the loader. Loads made on the pool
+ * are {@link RateLimitHandler#inBackground(Callable) background} requests, paced before interactive ones.
+ */
+final class RefreshingCache<V> {
+    private static final Logger LOGGER = Logger.getLogger(RefreshingCache.class.getName());
+
+    private static final String PROPERTY_PREFIX = RefreshingCache.class.getName();
+
+    /**
+     * Number of entries reloaded in the background concurrently.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int REFRESH_THREADS = Integer.getInteger(PROPERTY_PREFIX + ".refreshThreads", 2);
+
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS,
+            60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(100), new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Coding permission cache refresh " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private final long refreshAfter;
+    private final long expireAfter;
+    private final Ticker ticker;
+
+    private final Cache<String, Entry<V>> entries;
+    private final ConcurrentMap<String, FutureTask<V>> loading = new ConcurrentHashMap<>();
+
+    RefreshingCache(long refreshAfter, long expireAfter, long grace, TimeUnit unit) {
+        this(refreshAfter, expireAfter, grace, unit, Ticker.systemTicker());
+    }
+
+    RefreshingCache(long refreshAfter, long expireAfter, long grace, TimeUnit unit, Ticker ticker) {
+        this.refreshAfter = unit.toMillis(refreshAfter);
+        this.expireAfter = unit.toMillis(expireAfter);
+        this.ticker = ticker;
+        this.entries = CacheBuilder.newBuilder().expireAfterWrite(expireAfter + grace, unit).ticker(ticker).build();
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long loadedAt;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * @throws ExecutionException if the loader fails and there is no value to fall back on
+     */
+    V get(String key, Callable<V> loader) throws ExecutionException {
+        Entry<V> entry = entries.getIfPresent(key);
+        if (entry != null) {
+            long age = now() - entry.loadedAt;
+            if (age < refreshAfter) {
+                return entry.value;
+            }
+            if (age < expireAfter) {
+                refresh(key, entry, loader);
+                return entry.value;
+            }
+        }
+        try {
+            return load(key, loader);
+        } catch (ExecutionException e) {
+            if (entry == null) {
+                throw e;
+            }
+            LOGGER.log(Level.WARNING, "Failed to reload {0}, serving the last known value: {1}",
+                    new Object[] {key, e.getCause()});
+            return entry.value;
+        }
+    }
+
+    /**
+     * @return the value if it hasn't expired, without loading or refreshing it
+     */
+    V getIfPresent(String key) {
+        Entry<V> entry = entries.getIfPresent(key);
+        if (entry == null || now() - entry.loadedAt >= expireAfter) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Loads the value in the background if it isn't cached yet, without waiting for it.
+     */
+    void prefetch(final String key, final Callable<V> loader) {
+        if (getIfPresent(key) != null || loading.containsKey(key)) {
+            return;
+        }
+        try {
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (getIfPresent(key) != null) {
+                        return; // loaded while this was queued
+                    }
+                    try {
+                        load(key, inBackground(loader));
+                    } catch (ExecutionException e) {
+                        LOGGER.log(Level.FINE, "Failed to prefetch " + key, e.getCause());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the pool is busy, it is only a warmup
+            LOGGER.log(Level.FINEST, "Skipped prefetching {0}", key);
+        }
+    }
+
+    void put(String key, V value) {
+        entries.put(key, new Entry<V>(value, now()));
+    }
+
+    void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(ticker.read());
+    }
+
+    /**
+     * Runs the loader as a background request, for the loads made on the pool.
+     */
+    private static <V> Callable<V> inBackground(final Callable<V> loader) {
+        return new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                return RateLimitHandler.inBackground(loader);
+            }
+        };
+    }
+
+    private V load(final String key, final Callable<V> loader) throws ExecutionException {
+        FutureTask<V> task = new FutureTask<V>(new Callable<V>() {
+            @Override
+            public V call() throws Exception {
+                V value = loader.call();
+                if (value != null) {
+                    put(key, value);
+                }
+                return value;
+            }
+        });
+        FutureTask<V> inFlight = loading.putIfAbsent(key, task);
+        if (inFlight == null) {
+            try {
+                task.run();
+            } finally {
+                loading.remove(key, task);
+            }
+            inFlight = task;
+        }
+        try {
+            return inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        }
+    }
+
+    private void refresh(final String key, final Entry<V> entry, final Callable<V> loader) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return; // already being reloaded
+        }
+        try {
+            EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        load(key, inBackground(loader));
+                    } catch (ExecutionException e) {
+                        LOGGER.log(Level.FINE, "Failed to refresh " + key + ", keeping the current value", e.getCause());
+                    } finally {
+                        entry.refreshing.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // too many refreshes queued, the next caller tries again
+            entry.refreshing.set(false);
+        }
+    }
+}
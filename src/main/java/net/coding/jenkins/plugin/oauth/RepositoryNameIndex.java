@@ -0,0 +1,211 @@
+/**
+ *  The MIT License
+ *
+ * Copyright (c) 2011 Michael O'Cleirigh
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coding.jenkins.plugin.oauth;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.AbstractItem;
+import hudson.model.AbstractProject;
+import hudson.model.Describable;
+import hudson.model.Item;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
+import jenkins.branch.MultiBranchProject;
+import jenkins.scm.api.SCMSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index from the full name of an item to the Coding repository it builds, so that
+ * {@link CodingRequireOrganizationMembershipACL} doesn't match the remote URL against
+ * {@link CodingRepositoryName} patterns on every permission check.
+ *
+ * <p>
+ * Entries are added on first lookup and dropped when the item is saved, renamed, moved or deleted.
+ * Dropping one also outdates the answers in {@link PermissionDecisionCache}, as they may be based on it,
+ * while changes to items no permission check has looked up yet leave the answers alone.
+ */
+public final class RepositoryNameIndex {
+
+    private static final RepositoryNameIndex INSTANCE = new RepositoryNameIndex();
+
+    /**
+     * Marks items that don't build a Coding repository, as the map can't hold {@code null}.
+     */
+    private static final CodingRepositoryName NONE = new CodingRepositoryName(null, null, null);
+
+    private final Map<String, CodingRepositoryName> repositoryNames = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on every invalidation, so that a lookup that raced with one doesn't store what
+     * it read from the old configuration.
+     */
+    private long generation;
+
+    /**
+     * Number of lookups parsing an item, whose answers may be based on the configuration being replaced.
+     */
+    private int parsing;
+
+    RepositoryNameIndex() { }
+
+    public static RepositoryNameIndex get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the repository built by the item, or {@code null} if it isn't a Coding repository
+     */
+    public CodingRepositoryName getRepositoryName(AbstractItem item) {
+        String fullName = item.getFullName();
+        CodingRepositoryName name = repositoryNames.get(fullName);
+        if (name == null) {
+            long start;
+            synchronized (this) {
+                start = generation;
+                parsing++;
+            }
+            try {
+                name = parse(item);
+            } finally {
+                synchronized (this) {
+                    parsing--;
+                }
+            }
+            if (name == null) {
+                name = NONE;
+            }
+            cache(fullName, name, start);
+        }
+        return name == NONE ? null : name;
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches the repository name unless the index has been invalidated since {@code start}.
+     */
+    synchronized boolean cache(String fullName, CodingRepositoryName name, long start) {
+        if (start != generation) {
+            return false;
+        }
+        repositoryNames.put(fullName, name);
+        return true;
+    }
+
+    boolean isIndexed(String fullName) {
+        return repositoryNames.containsKey(fullName);
+    }
+
+    void onDeleted(String fullName) {
+        invalidate(fullName);
+        invalidateAll(fullName + '/');
+    }
+
+    void onLocationChanged(String oldFullName, String newFullName) {
+        invalidate(oldFullName);
+        invalidateAll(oldFullName + '/');
+        invalidate(newFullName);
+    }
+
+    synchronized void invalidate(String fullName) {
+        generation++;
+        boolean indexed = repositoryNames.remove(fullName) != null;
+        if (indexed || parsing > 0) {
+            PermissionDecisionCache.invalidateAll();
+        }
+    }
+
+    synchronized void invalidateAll(String fullNamePrefix) {
+        generation++;
+        boolean indexed = false;
+        for (String fullName : new ArrayList<>(repositoryNames.keySet())) {
+            if (fullName.startsWith(fullNamePrefix)) {
+                indexed |= repositoryNames.remove(fullName) != null;
+            }
+        }
+        if (indexed || parsing > 0) {
+            PermissionDecisionCache.invalidateAll();
+        }
+    }
+
+    static CodingRepositoryName parse(AbstractItem item) {
+        String repoUrl = null;
+        Describable scm = null;
+        if (item instanceof MultiBranchProject) {
+            MultiBranchProject project = (MultiBranchProject) item;
+            List sources = project.getSCMSources();
+            if (!sources.isEmpty()) {
+                scm = (SCMSource) sources.get(0);
+            }
+        } else if (item instanceof AbstractProject) {
+            AbstractProject project = (AbstractProject) item;
+            scm = project.getScm();
+        }
+        if (scm instanceof GitSCM) {
+            GitSCM git = (GitSCM) scm;
+            List<UserRemoteConfig> userRemoteConfigs = git.getUserRemoteConfigs();
+            if (!userRemoteConfigs.isEmpty()) {
+                repoUrl = userRemoteConfigs.get(0).getUrl();
+            }
+        }
+        return repoUrl == null ? null : CodingRepositoryName.create(repoUrl);
+    }
+
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onUpdated(Item item) {
+            INSTANCE.invalidate(item.getFullName());
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            INSTANCE.onDeleted(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            INSTANCE.onLocationChanged(oldFullName, newFullName);
+        }
+    }
+
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Item) {
+                INSTANCE.invalidate(((Item) o).getFullName());
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ *  The MIT License
+ *
+ * Copyright (c) 2011 Michael O'Cleirigh
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coding.jenkins.plugin.oauth;
+
+/**
+ * How {@link CodingAuthenticationToken#hasRepositoryPermission(String, hudson.security.Permission,
+ * RepositoryPermissionStrategy)} finds out the rights of a user on the repository of a job.
+ */
+public enum RepositoryPermissionStrategy {
+    /**
+     * Queries the repository of the job and the rights of the user on it. Needs the {@code repo} or
+     * {@code public_repo} scope, and grants members without admin rights less than {@link #ENUMERATE}.
+     */
+    PROBE {
+        @Override
+        public String getDisplayName() {
+            return Messages.coding_oauth_repositoryPermissionStrategy_probe();
+        }
+    },
+    /**
+     * Like {@link #PROBE}, and also lists all the repositories of the user in the background, so that
+     * the following checks of the user are answered from that list.
+     */
+    PROBE_AND_WARMUP {
+        @Override
+        public String getDisplayName() {
+            return Messages.coding_oauth_repositoryPermissionStrategy_probeAndWarmup();
+        }
+    },
+    /**
+     * Lists all the repositories of the user and of their organizations before the first check, and only
+     * queries the repositories that aren't in the list. Any repository in the list grants every permission.
+     * The default.
+     */
+    ENUMERATE {
+        @Override
+        public String getDisplayName() {
+            return Messages.coding_oauth_repositoryPermissionStrategy_enumerate();
+        }
+    };
+
+    public abstract String getDisplayName();
+}
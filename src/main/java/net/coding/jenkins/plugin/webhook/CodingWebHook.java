@@ -19,22 +19,18 @@
  */
 package net.coding.jenkins.plugin.webhook;
 
-import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import hudson.Extension;
-import hudson.model.Item;
-import hudson.model.ItemGroup;
 import hudson.model.Job;
 import hudson.model.UnprotectedRootAction;
-import hudson.remoting.Callable;
-import hudson.security.ACL;
 import hudson.security.csrf.CrumbExclusion;
-import jenkins.model.Jenkins;
 import net.coding.jenkins.plugin.CodingPushTrigger;
 import net.coding.jenkins.plugin.Utils;
 import net.coding.jenkins.plugin.bean.WebHookTask;
+import net.coding.jenkins.plugin.model.MergeRequest;
+import net.coding.jenkins.plugin.model.Repository;
 import org.apache.commons.lang.StringUtils;
-import org.jenkinsci.remoting.RoleChecker;
 import org.kohsuke.stapler.HttpResponses;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
@@ -44,7 +40,10 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +55,10 @@ public class CodingWebHook implements UnprotectedRootAction {
     private static final Logger LOGGER = Logger.getLogger(CodingWebHook.class.getName());
 
     public static final String WEBHOOK_URL = "coding";
+    /**
+     * Url of the webhook shared by all jobs, under {@link #WEBHOOK_URL}, dispatched with {@link RepositoryJobIndex}.
+     */
+    public static final String REPOSITORY_WEBHOOK_URL = "repo";
     public static final String PERSONAL_TOKEN_HEADER = "Authorization";
     public static final String API_TOKEN_PARAM = "private_token";
 
@@ -100,12 +103,19 @@ public class CodingWebHook implements UnprotectedRootAction {
 
     public void getDynamic(final String projectName, final StaplerRequest request, StaplerResponse response) {
         LOGGER.log(Level.INFO, "WebHook called with url: {0}", request.getRequestURIWithQueryString());
-        Iterator<String> restOfPathParts = Splitter.on('/').omitEmptyStrings().split(request.getRestOfPath()).iterator();
-        Job<?, ?> project = resolveProject(projectName, restOfPathParts);
-        if (project == null) {
+        List<String> restOfPathParts = ImmutableList.copyOf(
+                Splitter.on('/').omitEmptyStrings().split(request.getRestOfPath()));
+        WebHookJobCache.Resolution resolution = WebHookJobCache.get().resolve(projectName, restOfPathParts);
+        Job<?, ?> project = resolution == null ? null : resolution.getJob();
+        // a job named after the repository endpoint keeps its own url
+        boolean repositoryHook = project == null && REPOSITORY_WEBHOOK_URL.equals(projectName)
+                && restOfPathParts.isEmpty();
+        if (project == null && !repositoryHook) {
             throw HttpResponses.notFound();
         }
-        LOGGER.log(Level.INFO, "Resolved project: {0}", project.getName());
+        if (project != null) {
+            LOGGER.log(Level.INFO, "Resolved project: {0}", project.getName());
+        }
 
         String method = request.getMethod();
         switch (method) {
@@ -123,24 +133,12 @@ public class CodingWebHook implements UnprotectedRootAction {
                 if (helper == null) {
                     return;
                 }
-                WebHookTask task;
-                try {
-                    task = helper.parseTaskFromRequest(request);
-                } catch (Exception e) {
-                    LOGGER.log(Level.SEVERE, "Unexpected Exception occurred while parsing task from request");
-                    LOGGER.log(Level.FINEST, "Exception is " + e);
-                    throw hudson.util.HttpResponses.error(500, "Unexpected Exception occurred " +
-                            "while parsing task from request");
-                }
-
-                LOGGER.log(Level.FINEST, "Task is " + task);
-
-                if (!task.isParseSuccess()) {
-                    LOGGER.log(Level.WARNING, "Fail to parse request: {0}", task.getRequestBody());
+                if (resolution != null) {
+                    postToProject(resolution, helper, request);
+                } else {
+                    postToRepository(helper, request);
                 }
-
-                ACL.impersonate(ACL.SYSTEM, new PostTaskRunnable(project, task));
-                throw hudson.util.HttpResponses.ok();
+                break;
             case "GET":
                 throw hudson.util.HttpResponses.errorWithoutStack(400, "This url is not intend" +
                         " to be visited by human, please test it on your webhook settings page.");
@@ -150,6 +148,123 @@ public class CodingWebHook implements UnprotectedRootAction {
         }
     }
 
+    private void postToProject(WebHookJobCache.Resolution resolution, IWebHookHelper helper, StaplerRequest request) {
+        Job<?, ?> project = resolution.getJob();
+        CodingPushTrigger trigger = resolution.getTrigger();
+        if (trigger == null) {
+            LOGGER.log(Level.WARNING, "CodingPushTrigger not found");
+            throw hudson.util.HttpResponses.ok();
+        }
+        WebHookTask task = readTask(helper, request);
+        // reject forged deliveries before spending any time on decoding them
+        if (!helper.isSignatureValid(task, trigger.getWebHookToken())) {
+            LOGGER.log(Level.INFO, "Skipping due to invalid Signature for delivery {0} of project {1}",
+                    new Object[]{request.getHeader("X-Coding-Delivery"), project.getFullName()});
+            throw hudson.util.HttpResponses.error(401, "Signature Invalid");
+        }
+        task.setSignatureVerified(true);
+        decodeTask(helper, task);
+
+        respond(WebHookTaskQueue.submit(new PostTaskRunnable(project, task)));
+    }
+
+    /**
+     * Dispatches a delivery to every job building the repository it comes from, so that it is
+     * parsed once no matter how many jobs are interested in it.
+     */
+    private void postToRepository(IWebHookHelper helper, StaplerRequest request) {
+        WebHookTask task = readTask(helper, request);
+        // the repository is part of the payload, the tokens to check are only known once it is decoded
+        decodeTask(helper, task);
+        if (!task.isParseSuccess() || task.getRepository() == null) {
+            throw hudson.util.HttpResponses.ok();
+        }
+
+        Set<String> jobNames = RepositoryJobIndex.get().getJobs(task.getRepository());
+        List<Job<?, ?>> projects = new ArrayList<>(jobNames.size());
+        for (String jobName : jobNames) {
+            WebHookJobCache.Resolution resolution = WebHookJobCache.get().resolve(jobName, Collections.<String>emptyList());
+            CodingPushTrigger trigger = resolution == null ? null : resolution.getTrigger();
+            if (trigger == null) {
+                continue;
+            }
+            Job<?, ?> project = resolution.getJob();
+            if (!helper.isSignatureValid(task, trigger.getWebHookToken())) {
+                LOGGER.log(Level.INFO, "Skipping project {0} due to invalid Signature for delivery {1}",
+                        new Object[]{jobName, request.getHeader("X-Coding-Delivery")});
+                continue;
+            }
+            projects.add(project);
+        }
+        if (projects.isEmpty()) {
+            LOGGER.log(Level.INFO, "No project found for repository: {0}", task.getRepository().getFull_name());
+            if (!jobNames.isEmpty()) {
+                throw hudson.util.HttpResponses.error(401, "Signature Invalid");
+            }
+            throw hudson.util.HttpResponses.ok();
+        }
+        task.setSignatureVerified(true);
+
+        WebHookTaskQueue.Submission submission = WebHookTaskQueue.Submission.REJECTED;
+        List<String> rejected = new ArrayList<>();
+        for (Job<?, ?> project : projects) {
+            LOGGER.log(Level.FINE, "Dispatching delivery to project: {0}", project.getFullName());
+            WebHookTaskQueue.Submission submitted = WebHookTaskQueue.submit(new PostTaskRunnable(project, task));
+            if (submitted == WebHookTaskQueue.Submission.REJECTED) {
+                rejected.add(project.getFullName());
+            } else if (submission != WebHookTaskQueue.Submission.QUEUED) {
+                // answer with the least complete outcome of the accepted jobs: queued, then ran
+                submission = submitted;
+            }
+        }
+        if (!rejected.isEmpty() && submission != WebHookTaskQueue.Submission.REJECTED) {
+            // a redelivery would build the jobs that accepted it a second time
+            LOGGER.log(Level.WARNING, "WebHook queue is full, dropping delivery of {0} on {1} for projects {2}",
+                    new Object[]{task.getEvent(), task.getRepository().getFull_name(), rejected});
+        }
+        respond(submission);
+    }
+
+    private WebHookTask readTask(IWebHookHelper helper, StaplerRequest request) {
+        try {
+            return helper.readTaskFromRequest(request);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Unexpected Exception occurred while reading task from request");
+            LOGGER.log(Level.FINEST, "Exception is " + e);
+            throw hudson.util.HttpResponses.error(500, "Unexpected Exception occurred " +
+                    "while reading task from request");
+        }
+    }
+
+    private void decodeTask(IWebHookHelper helper, WebHookTask task) {
+        try {
+            helper.decodeTask(task);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Unexpected Exception occurred while parsing task from request");
+            LOGGER.log(Level.FINEST, "Exception is " + e);
+            throw hudson.util.HttpResponses.error(500, "Unexpected Exception occurred " +
+                    "while parsing task from request");
+        }
+
+        LOGGER.log(Level.FINEST, "Task is {0}", task);
+
+        if (!task.isParseSuccess()) {
+            LOGGER.log(Level.WARNING, "Fail to parse request: {0}", task.getRequestBody());
+        }
+    }
+
+    private void respond(WebHookTaskQueue.Submission submission) {
+        switch (submission) {
+            case REJECTED:
+                throw hudson.util.HttpResponses.status(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            case RAN:
+                // handled on this thread, the delivery is complete
+                throw hudson.util.HttpResponses.ok();
+            default:
+                throw hudson.util.HttpResponses.status(HttpServletResponse.SC_ACCEPTED);
+        }
+    }
+
     public static class PostTaskRunnable implements Runnable {
 
         private final Job<?, ?> project;
@@ -163,7 +278,7 @@ public class CodingWebHook implements UnprotectedRootAction {
         @Override
         public void run() {
             LOGGER.log(Level.FINEST, "Finding CodingPushTrigger");
-            CodingPushTrigger trigger = CodingPushTrigger.getFromJob(project);
+            CodingPushTrigger trigger = WebHookJobCache.get().getTrigger(project);
             if (trigger == null) {
                 LOGGER.log(Level.WARNING, "CodingPushTrigger not found");
                 return;
@@ -171,32 +286,23 @@ public class CodingWebHook implements UnprotectedRootAction {
             LOGGER.log(Level.FINEST, "CodingPushTrigger going to posting");
             trigger.onPost(task);
         }
-    }
-
-    private Job<?, ?> resolveProject(final String projectName, final Iterator<String> restOfPathParts) {
-        return ACL.impersonate(ACL.SYSTEM, new Callable<Job<?, ?>, RuntimeException>() {
-            @Override
-            public Job<?, ?> call() throws RuntimeException {
-                final Jenkins jenkins = Jenkins.getInstance();
-                if (jenkins != null) {
-                    Item item = jenkins.getItemByFullName(projectName);
-                    while (item instanceof ItemGroup<?> && !(item instanceof Job<?, ?>) && restOfPathParts.hasNext()) {
-                        item = jenkins.getItem(restOfPathParts.next(), (ItemGroup<?>) item);
-                    }
-                    if (item instanceof Job<?, ?>) {
-                        return (Job<?, ?>) item;
-                    }
-                }
-                LOGGER.log(Level.INFO, "No project found: {0}, {1}",
-                        new String[]{projectName, Joiner.on('/').join(restOfPathParts)});
-                return null;
-            }
 
-            @Override
-            public void checkRoles(RoleChecker checker) throws SecurityException {
+        @Override
+        public String toString() {
+            Repository repository = task.getRepository();
+            return "delivery of " + task.getEvent()
+                    + " on " + (repository == null ? null : repository.getFull_name())
+                    + " ref " + ref()
+                    + " for project " + project.getFullName();
+        }
 
+        private String ref() {
+            if (task.getPush() != null) {
+                return task.getPush().getRef();
             }
-        });
+            MergeRequest mergeRequest = task.getMergeRequest() == null ? null : task.getMergeRequest().getMergeRequest();
+            return mergeRequest == null || mergeRequest.getHead() == null ? null : mergeRequest.getHead().getRef();
+        }
     }
 
     @Extension
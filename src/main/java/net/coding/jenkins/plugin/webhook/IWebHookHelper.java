@@ -22,10 +22,22 @@ package net.coding.jenkins.plugin.webhook;
 import net.coding.jenkins.plugin.bean.WebHookTask;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 
 public interface IWebHookHelper {
 
-    WebHookTask parseTaskFromRequest(final HttpServletRequest request);
+    /**
+     * Reads the request into a task without decoding the payload, when the signature allows it,
+     * so that {@link #isSignatureValid(WebHookTask, String)} can reject forged deliveries first.
+     */
+    WebHookTask readTaskFromRequest(final HttpServletRequest request) throws IOException;
+
+    /**
+     * Decodes the payload of a task returned by {@link #readTaskFromRequest(HttpServletRequest)}.
+     */
+    void decodeTask(WebHookTask task) throws IOException;
+
+    WebHookTask parseTaskFromRequest(final HttpServletRequest request) throws IOException;
 
     boolean isSignatureValid(WebHookTask task, String webHookToken);
 
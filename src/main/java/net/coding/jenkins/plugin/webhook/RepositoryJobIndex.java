@@ -0,0 +1,294 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import com.google.common.collect.ImmutableSet;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.plugins.git.GitSCM;
+import hudson.plugins.git.UserRemoteConfig;
+import hudson.scm.SCM;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import jenkins.triggers.SCMTriggerItem;
+import net.coding.jenkins.plugin.CodingPushTrigger;
+import net.coding.jenkins.plugin.model.Repository;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index from repository to the jobs that have a {@link CodingPushTrigger} and build it,
+ * used to fan a single webhook delivery out to all of them.
+ *
+ * <p>
+ * Repositories are keyed by their host and normalized path, e.g. {@code e.coding.net/team/project/repo}
+ * for {@code git@e.coding.net:team/project/repo.git}, so that SSH and HTTPS remotes resolve to the same
+ * entry, while a repository of the same name on another server doesn't.
+ */
+public final class RepositoryJobIndex {
+    private static final Logger LOGGER = Logger.getLogger(RepositoryJobIndex.class.getName());
+
+    private static final RepositoryJobIndex INSTANCE = new RepositoryJobIndex();
+
+    /**
+     * Repository key to full names of jobs.
+     */
+    private volatile Map<String, Set<String>> jobsByRepository = new ConcurrentHashMap<>();
+    /**
+     * Full name of job to its repository keys, to update the index incrementally.
+     */
+    private Map<String, Set<String>> repositoriesByJob = new HashMap<>();
+
+    private volatile boolean built;
+
+    private RepositoryJobIndex() { }
+
+    public static RepositoryJobIndex get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Finds the jobs building the given repository.
+     */
+    public Set<String> getJobs(Repository repository) {
+        if (repository == null) {
+            return Collections.emptySet();
+        }
+        if (!built) {
+            rebuild();
+        }
+        // the full name has no host, so only the urls of the payload are looked up
+        Map<String, Set<String>> index = jobsByRepository;
+        Set<String> jobs = new LinkedHashSet<>();
+        addJobs(index, jobs, key(repository.getSsh_url()));
+        addJobs(index, jobs, key(repository.getClone_url()));
+        addJobs(index, jobs, key(repository.getHtml_url()));
+        return jobs;
+    }
+
+    private static void addJobs(Map<String, Set<String>> index, Set<String> jobs, String key) {
+        if (key == null) {
+            return;
+        }
+        Set<String> found = index.get(key);
+        if (found != null) {
+            jobs.addAll(found);
+        }
+    }
+
+    public synchronized void rebuild() {
+        final Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return;
+        }
+        // built aside and swapped in, so that deliveries arriving meanwhile still see the old index
+        final Map<String, Set<String>> jobs = new ConcurrentHashMap<>();
+        final Map<String, Set<String>> repositories = new HashMap<>();
+        ACL.impersonate(ACL.SYSTEM, new Runnable() {
+            @Override
+            public void run() {
+                for (Job<?, ?> job : jenkins.getAllItems(Job.class)) {
+                    put(jobs, repositories, job);
+                }
+            }
+        });
+        repositoriesByJob = repositories;
+        jobsByRepository = jobs;
+        built = true;
+        LOGGER.log(Level.FINE, "Indexed {0} jobs by repository", repositoriesByJob.size());
+    }
+
+    synchronized void update(Job<?, ?> job) {
+        if (!built) {
+            return;
+        }
+        remove(job.getFullName());
+        put(jobsByRepository, repositoriesByJob, job);
+    }
+
+    synchronized void remove(String fullName) {
+        if (!built) {
+            return;
+        }
+        Set<String> keys = repositoriesByJob.remove(fullName);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Set<String> jobs = jobsByRepository.get(key);
+            if (jobs == null) {
+                continue;
+            }
+            Set<String> updated = new LinkedHashSet<>(jobs);
+            updated.remove(fullName);
+            if (updated.isEmpty()) {
+                jobsByRepository.remove(key);
+            } else {
+                jobsByRepository.put(key, ImmutableSet.copyOf(updated));
+            }
+        }
+    }
+
+    synchronized void removeAll(String fullNamePrefix) {
+        for (String fullName : new ArrayList<>(repositoriesByJob.keySet())) {
+            if (fullName.startsWith(fullNamePrefix)) {
+                remove(fullName);
+            }
+        }
+    }
+
+    private static void put(Map<String, Set<String>> jobsByRepository, Map<String, Set<String>> repositoriesByJob,
+                            Job<?, ?> job) {
+        if (CodingPushTrigger.getFromJob(job) == null) {
+            return;
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        SCMTriggerItem item = SCMTriggerItem.SCMTriggerItems.asSCMTriggerItem(job);
+        if (item != null) {
+            for (SCM scm : item.getSCMs()) {
+                if (!(scm instanceof GitSCM)) {
+                    continue;
+                }
+                for (UserRemoteConfig config : ((GitSCM) scm).getUserRemoteConfigs()) {
+                    String key = key(config.getUrl());
+                    if (key != null) {
+                        keys.add(key);
+                    }
+                }
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        String fullName = job.getFullName();
+        repositoriesByJob.put(fullName, keys);
+        for (String key : keys) {
+            Set<String> jobs = jobsByRepository.get(key);
+            Set<String> updated = jobs == null ? new LinkedHashSet<String>() : new LinkedHashSet<>(jobs);
+            updated.add(fullName);
+            jobsByRepository.put(key, ImmutableSet.copyOf(updated));
+        }
+    }
+
+    /**
+     * Normalizes a remote URL into the host and the repository path, e.g.
+     * {@code https://user@e.coding.net/team/repo.git} into {@code e.coding.net/team/repo}.
+     * The user and port are dropped, as SSH and HTTPS remotes of a repository differ in them.
+     *
+     * @return {@code null} for anything without a host, such as a local path
+     */
+    static String key(String url) {
+        if (StringUtils.isBlank(url)) {
+            return null;
+        }
+        String path = url.trim();
+        String host;
+        int scheme = path.indexOf("://");
+        if (scheme >= 0) {
+            // scheme://[user@]host[:port]/path
+            path = path.substring(scheme + 3);
+            int slash = path.indexOf('/');
+            host = slash < 0 ? path : path.substring(0, slash);
+            path = slash < 0 ? "" : path.substring(slash + 1);
+            int port = host.lastIndexOf(':');
+            if (port >= 0) {
+                host = host.substring(0, port);
+            }
+        } else if (path.indexOf(':') >= 0) {
+            // scp-like syntax, [user@]host:path
+            host = path.substring(0, path.indexOf(':'));
+            path = path.substring(path.indexOf(':') + 1);
+        } else {
+            return null;
+        }
+        host = host.substring(host.lastIndexOf('@') + 1);
+        path = StringUtils.removeEnd(StringUtils.strip(path, "/"), ".git");
+        path = StringUtils.strip(path, "/");
+        if (host.isEmpty() || path.isEmpty()) {
+            return null;
+        }
+        return (host + '/' + path).toLowerCase(Locale.ENGLISH);
+    }
+
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onLoaded() {
+            INSTANCE.rebuild();
+        }
+
+        @Override
+        public void onCreated(Item item) {
+            if (item instanceof Job) {
+                INSTANCE.update((Job<?, ?>) item);
+            }
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            if (item instanceof Job) {
+                INSTANCE.update((Job<?, ?>) item);
+            }
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            if (item instanceof Job) {
+                INSTANCE.remove(item.getFullName());
+            } else if (item instanceof ItemGroup) {
+                INSTANCE.removeAll(item.getFullName() + '/');
+            }
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            if (item instanceof Job) {
+                INSTANCE.remove(oldFullName);
+                INSTANCE.update((Job<?, ?>) item);
+            }
+        }
+    }
+
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Job) {
+                INSTANCE.update((Job<?, ?>) o);
+            }
+        }
+    }
+}
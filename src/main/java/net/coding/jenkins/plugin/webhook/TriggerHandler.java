@@ -22,6 +22,7 @@ package net.coding.jenkins.plugin.webhook;
 import net.coding.jenkins.plugin.bean.WebHookTask;
 import net.coding.jenkins.plugin.cause.CauseData;
 import net.coding.jenkins.plugin.cause.CodingWebHookCause;
+import net.coding.jenkins.plugin.cause.SupersededInterruption;
 import net.coding.jenkins.plugin.model.Commit;
 import net.coding.jenkins.plugin.model.MergeRequest;
 import net.coding.jenkins.plugin.model.Ref;
@@ -36,12 +37,20 @@ import org.eclipse.jgit.transport.URIish;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import hudson.model.Action;
+import hudson.model.Cause;
 import hudson.model.CauseAction;
+import hudson.model.Computer;
+import hudson.model.Executor;
 import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
 import jenkins.model.ParameterizedJobMixIn;
 
 import static net.coding.jenkins.plugin.cause.CauseData.ActionType;
@@ -59,12 +68,73 @@ public class TriggerHandler {
     private boolean triggerOnMergeRequest;
     private String mergeRequestTriggerAction;
     private BranchFilter branchFilter;
+    /**
+     * Seconds during which pushes to the same branch are coalesced into one build, 0 to disable.
+     */
+    private int pushCoalescingWindow;
+    /**
+     * Whether a new event cancels the pending and running builds of the same merge request or branch.
+     */
+    private boolean supersedeBuilds;
+    private BuildScheduler buildScheduler;
 
-    public TriggerHandler(boolean triggerOnPush, boolean triggerOnMergeRequest, String mergeRequestTriggerAction, BranchFilter branchFilter) {
+    /**
+     * Puts the builds triggered by a delivery in the queue.
+     */
+    interface BuildScheduler {
+        void scheduleBuild(Job<?, ?> job, int quietPeriod, Action[] actions);
+
+        /**
+         * @return the causes of the builds of the job still waiting for their quiet period to end, which
+         *      a push can be coalesced into
+         */
+        List<CodingWebHookCause> getWaitingCauses(Job<?, ?> job);
+    }
+
+    private static final BuildScheduler JENKINS_QUEUE = new BuildScheduler() {
+        @Override
+        public void scheduleBuild(Job<?, ?> job, int quietPeriod, Action[] actions) {
+            asParameterizedJobMixIn(job).scheduleBuild2(quietPeriod, actions);
+        }
+
+        @Override
+        public List<CodingWebHookCause> getWaitingCauses(Job<?, ?> job) {
+            List<CodingWebHookCause> causes = new ArrayList<>();
+            Jenkins jenkins = Jenkins.getInstance();
+            if (jenkins == null || !(job instanceof Queue.Task)) {
+                return causes;
+            }
+            for (Queue.Item item : jenkins.getQueue().getItems((Queue.Task) job)) {
+                // later items may already be handed to an executor
+                if (!(item instanceof Queue.WaitingItem)) {
+                    continue;
+                }
+                for (Cause cause : item.getCauses()) {
+                    if (cause instanceof CodingWebHookCause) {
+                        causes.add((CodingWebHookCause) cause);
+                    }
+                }
+            }
+            return causes;
+        }
+    };
+
+    public TriggerHandler(boolean triggerOnPush, boolean triggerOnMergeRequest, String mergeRequestTriggerAction,
+                          BranchFilter branchFilter, int pushCoalescingWindow, boolean supersedeBuilds) {
+        this(triggerOnPush, triggerOnMergeRequest, mergeRequestTriggerAction, branchFilter, pushCoalescingWindow,
+                supersedeBuilds, JENKINS_QUEUE);
+    }
+
+    TriggerHandler(boolean triggerOnPush, boolean triggerOnMergeRequest, String mergeRequestTriggerAction,
+                   BranchFilter branchFilter, int pushCoalescingWindow, boolean supersedeBuilds,
+                   BuildScheduler buildScheduler) {
+        this.buildScheduler = buildScheduler;
         this.triggerOnPush = triggerOnPush;
         this.triggerOnMergeRequest = triggerOnMergeRequest;
         this.mergeRequestTriggerAction = mergeRequestTriggerAction;
         this.branchFilter = branchFilter;
+        this.pushCoalescingWindow = pushCoalescingWindow;
+        this.supersedeBuilds = supersedeBuilds;
     }
 
     public void handle(Job<?, ?> job, WebHookTask task, boolean ciSkip) {
@@ -106,30 +176,155 @@ public class TriggerHandler {
             LOGGER.log(Level.INFO, "Skipping due to ci-skip.");
             return;
         }
-        if (!branchFilter.isBranchAllowed(branch) && !branchFilter.isBranchAllowed(fullRefsName)) {
+        if (!branchFilter.isBranchAllowed(branch, fullRefsName)) {
             LOGGER.log(Level.INFO, "Branch {0} and Ref {1} is not allowed", new Object[]{branch, fullRefsName});
             return;
         }
         if (shouldTrigger) {
             LOGGER.log(Level.FINEST, "Schedule to build for branch: {0}", branch);
-            scheduleBuild(job, createActions(job, task, actionType));
+            CauseData data = buildCauseData(task, actionType);
+            boolean coalesce = actionType == ActionType.PUSH && pushCoalescingWindow > 0;
+            if (supersedeBuilds) {
+                // a pending push is taken over by coalescing rather than cancelled
+                supersede(job, data, !coalesce);
+            }
+            if (coalesce) {
+                schedulePush(job, data);
+            } else {
+                scheduleBuild(job, 0, createActions(job, data));
+            }
+        }
+    }
+
+    /**
+     * Cancels the queued items and aborts the running builds of the job that were triggered for
+     * the same merge request or branch as the new event, as their result is outdated anyway, see
+     * {@link #findSuperseded(List, CauseData)}.
+     */
+    private void supersede(final Job<?, ?> job, final CauseData data, boolean queued) {
+        final Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins == null) {
+            return;
+        }
+        if (queued && job instanceof Queue.Task) {
+            Queue.withLock(new Runnable() {
+                @Override
+                public void run() {
+                    Queue queue = jenkins.getQueue();
+                    for (Queue.Item item : queue.getItems((Queue.Task) job)) {
+                        if (findSuperseded(item.getCauses(), data) != null && queue.cancel(item)) {
+                            LOGGER.log(Level.INFO, "Cancelled queued build of {0} superseded by {1}",
+                                    new Object[]{job.getFullName(), data.getCommitId()});
+                        }
+                    }
+                }
+            });
         }
+        for (Computer computer : jenkins.getComputers()) {
+            List<Executor> executors = new ArrayList<>(computer.getExecutors());
+            // pipelines run on flyweight executors
+            executors.addAll(computer.getOneOffExecutors());
+            for (Executor executor : executors) {
+                Queue.Executable executable = executor.getCurrentExecutable();
+                if (!(executable instanceof Run) || ((Run<?, ?>) executable).getParent() != job) {
+                    continue;
+                }
+                Run<?, ?> run = (Run<?, ?>) executable;
+                if (findSuperseded(run.getCauses(), data) != null) {
+                    LOGGER.log(Level.INFO, "Aborting {0} superseded by {1}",
+                            new Object[]{run.getFullDisplayName(), data.getCommitId()});
+                    executor.interrupt(Result.ABORTED, new SupersededInterruption(data));
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules a push build, or hands the push over to a build of the same branch still
+     * waiting in the queue, which then builds the newest head only.
+     *
+     * <p>
+     * The lookup and the scheduling happen under the queue lock, so that two pushes handled
+     * concurrently can't both miss the pending item.
+     */
+    private void schedulePush(final Job<?, ?> job, final CauseData data) {
+        Queue.withLock(new Runnable() {
+            @Override
+            public void run() {
+                CodingWebHookCause pending = findPendingPush(job, data);
+                if (pending != null) {
+                    pending.coalesce(data);
+                    LOGGER.log(Level.INFO, "Coalesced push of {0} to {1} into pending build of {2}",
+                            new Object[]{data.getAfter(), data.getRef(), job.getFullName()});
+                } else {
+                    scheduleBuild(job, pushCoalescingWindow, createActions(job, data));
+                }
+            }
+        });
+    }
+
+    private CodingWebHookCause findPendingPush(Job<?, ?> job, CauseData data) {
+        return findSameTarget(buildScheduler.getWaitingCauses(job), data);
+    }
+
+    /**
+     * Finds the cause of a build the given event makes outdated: one triggered for the same push ref or
+     * merge request, but not for the same commit, as a redelivery of the event would otherwise abort the
+     * very build it asks for.
+     */
+    static CodingWebHookCause findSuperseded(List<? extends Cause> causes, CauseData data) {
+        CodingWebHookCause cause = findSameTarget(causes, data);
+        if (cause == null || StringUtils.equals(cause.getData().getCommitId(), data.getCommitId())) {
+            return null;
+        }
+        return cause;
+    }
+
+    /**
+     * Finds the cause triggered for the same push ref or merge request as the given event.
+     */
+    private static CodingWebHookCause findSameTarget(List<? extends Cause> causes, CauseData data) {
+        for (Cause cause : causes) {
+            if (!(cause instanceof CodingWebHookCause)) {
+                continue;
+            }
+            CauseData other = ((CodingWebHookCause) cause).getData();
+            if (other.getActionType() != data.getActionType()) {
+                continue;
+            }
+            switch (data.getActionType()) {
+                case PUSH:
+                    if (StringUtils.equals(other.getRef(), data.getRef())) {
+                        return (CodingWebHookCause) cause;
+                    }
+                    break;
+                case MR:
+                case PR:
+                    if (Objects.equals(other.getMergeRequestIid(), data.getMergeRequestIid())) {
+                        return (CodingWebHookCause) cause;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return null;
     }
 
-    private void scheduleBuild(Job<?, ?> job, Action[] actions) {
-        int projectBuildDelay = 0;
+    private void scheduleBuild(Job<?, ?> job, int minimumDelay, Action[] actions) {
+        int projectBuildDelay = minimumDelay;
         if (job instanceof ParameterizedJobMixIn.ParameterizedJob) {
             ParameterizedJobMixIn.ParameterizedJob abstractProject = (ParameterizedJobMixIn.ParameterizedJob) job;
             if (abstractProject.getQuietPeriod() > projectBuildDelay) {
                 projectBuildDelay = abstractProject.getQuietPeriod();
             }
         }
-        asParameterizedJobMixIn(job).scheduleBuild2(projectBuildDelay, actions);
+        buildScheduler.scheduleBuild(job, projectBuildDelay, actions);
     }
 
-    private Action[] createActions(Job<?, ?> job, WebHookTask task, ActionType actionType) {
+    private Action[] createActions(Job<?, ?> job, CauseData data) {
         List<Action> actions = new ArrayList<>();
-        actions.add(new CauseAction(new CodingWebHookCause(buildCauseData(task, actionType))));
+        actions.add(new CauseAction(new CodingWebHookCause(data)));
         return actions.toArray(new Action[actions.size()]);
     }
 
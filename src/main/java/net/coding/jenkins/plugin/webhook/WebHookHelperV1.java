@@ -19,8 +19,6 @@
  */
 package net.coding.jenkins.plugin.webhook;
 
-import com.google.gson.Gson;
-import net.coding.jenkins.plugin.Utils;
 import net.coding.jenkins.plugin.bean.WebHookTask;
 import net.coding.jenkins.plugin.model.MergeRequest;
 import net.coding.jenkins.plugin.model.PersonIdent;
@@ -35,25 +33,40 @@ import net.coding.jenkins.plugin.v1.model.WebHook;
 import org.apache.commons.lang.StringUtils;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.net.URI;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public class WebHookHelperV1 implements IWebHookHelper {
     public static final String version = "v1";
 
     private static Logger LOGGER = Logger.getLogger(WebHookHelperV1.class.getName());
 
     @Override
-    public WebHookTask parseTaskFromRequest(HttpServletRequest request) {
-        String json = Utils.getRequestBody(request);
-        LOGGER.log(Level.INFO, "WebHook payload: {0}", json);
-        WebHook webHook = new Gson().fromJson(json, WebHook.class);
+    public WebHookTask parseTaskFromRequest(HttpServletRequest request) throws IOException {
+        WebHookTask task = readTaskFromRequest(request);
+        decodeTask(task);
+        return task;
+    }
+
+    /**
+     * The token of v1 webHooks is part of the payload, so it has to be decoded right away.
+     */
+    @Override
+    public WebHookTask readTaskFromRequest(HttpServletRequest request) throws IOException {
         WebHookTask task = new WebHookTask();
         task.setVersion(version);
-        task.setRequestBody(json);
+        WebHookPayloadDecoder.readPayload(request, task);
+        WebHook webHook = WebHookPayloadDecoder.decode(WebHookPayloadDecoder.reader(task), WebHook.class);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "WebHook payload: {0}", task.getRequestBody());
+        }
         switch (webHook.getEvent()) {
             case "push":
                 Push push = toPush(webHook);
@@ -229,6 +242,11 @@ public class WebHookHelperV1 implements IWebHookHelper {
         return outputPerson;
     }
 
+    @Override
+    public void decodeTask(WebHookTask task) {
+        // already decoded by readTaskFromRequest
+    }
+
     @Override
     public String parseEventHeader(String eventHeader) {
         return eventHeader;
@@ -236,6 +254,10 @@ public class WebHookHelperV1 implements IWebHookHelper {
 
     @Override
     public boolean isSignatureValid(WebHookTask task, String webHookToken) {
-        return StringUtils.isEmpty(webHookToken) || StringUtils.equals(webHookToken, task.getSignature());
+        if (StringUtils.isEmpty(webHookToken)) {
+            return true;
+        }
+        return task.getSignature() != null && MessageDigest.isEqual(
+                webHookToken.getBytes(UTF_8), task.getSignature().getBytes(UTF_8));
     }
 }
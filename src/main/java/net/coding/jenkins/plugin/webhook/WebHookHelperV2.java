@@ -19,16 +19,13 @@
  */
 package net.coding.jenkins.plugin.webhook;
 
-import net.coding.jenkins.plugin.Utils;
 import net.coding.jenkins.plugin.bean.WebHookTask;
-import net.coding.jenkins.plugin.common.gson.JSON;
 import net.coding.jenkins.plugin.model.event.MergeRequest;
 import net.coding.jenkins.plugin.model.event.Push;
-import org.apache.commons.codec.digest.HmacUtils;
 import org.apache.commons.lang.StringUtils;
 
 import javax.servlet.http.HttpServletRequest;
-import java.text.MessageFormat;
+import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,32 +35,43 @@ public class WebHookHelperV2 implements IWebHookHelper {
     private static Logger LOGGER = Logger.getLogger(WebHookHelperV2.class.getName());
 
     @Override
-    public WebHookTask parseTaskFromRequest(HttpServletRequest request) {
+    public WebHookTask readTaskFromRequest(HttpServletRequest request) throws IOException {
         WebHookTask task = new WebHookTask();
         task.setVersion(version);
-        String json = Utils.getRequestBody(request);
-        LOGGER.log(Level.INFO, "WebHook payload: {0}", json);
-        task.setRequestBody(json);
         String action = request.getHeader("X-Coding-Event");
         task.setEvent(action);
-        switch (action) {
+        if (WebHookTask.EVENT_PUSH.equals(action) || WebHookTask.EVENT_MERGE_REQUEST.equals(action)) {
+            WebHookPayloadDecoder.readPayload(request, task);
+            task.setSignature(request.getHeader("X-Coding-Signature"));
+        }
+        return task;
+    }
+
+    @Override
+    public void decodeTask(WebHookTask task) throws IOException {
+        switch (task.getEvent()) {
             case WebHookTask.EVENT_PUSH:
-                Push push = JSON.fromJson(json, Push.class);
+                Push push = WebHookPayloadDecoder.decodePush(WebHookPayloadDecoder.reader(task));
                 task.setPush(push);
                 task.setParseSuccess(true);
                 break;
             case WebHookTask.EVENT_MERGE_REQUEST:
-                MergeRequest mr = JSON.fromJson(json, MergeRequest.class);
+                MergeRequest mr = WebHookPayloadDecoder.decodeMergeRequest(WebHookPayloadDecoder.reader(task));
                 task.setMergeRequest(mr);
                 task.setParseSuccess(true);
                 break;
             default:
                 break;
         }
-        if (task.isParseSuccess()) {
-            String signature = request.getHeader("X-Coding-Signature");
-            task.setSignature(signature);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "WebHook payload: {0}", task.getRequestBody());
         }
+    }
+
+    @Override
+    public WebHookTask parseTaskFromRequest(HttpServletRequest request) throws IOException {
+        WebHookTask task = readTaskFromRequest(request);
+        decodeTask(task);
         return task;
     }
 
@@ -72,23 +80,7 @@ public class WebHookHelperV2 implements IWebHookHelper {
         if (StringUtils.isEmpty(webHookToken)) {
             return true;
         }
-        String signature = HmacUtils.hmacSha1Hex(webHookToken, task.getRequestBody());
-        String gotSignature = task.getSignature();
-        if (StringUtils.isEmpty(gotSignature)) {
-            LOGGER.log(Level.FINE, "Got Empty signature");
-            return false;
-        }
-        if (!StringUtils.startsWith(gotSignature, "sha1=")) {
-            LOGGER.log(Level.FINE,
-                    MessageFormat.format("Invalid signature, should start with while sha1=, got {0}", gotSignature));
-            return false;
-        }
-        boolean valid = StringUtils.equals("sha1=" + signature, gotSignature);
-        if (!valid) {
-            LOGGER.log(Level.FINE,
-                    MessageFormat.format("Invalid signature, should be {0}, while got {1}", signature, gotSignature));
-        }
-        return valid;
+        return WebHookSignatures.isValid(task.getSignature(), task.getPayload(), webHookToken);
     }
 
     @Override
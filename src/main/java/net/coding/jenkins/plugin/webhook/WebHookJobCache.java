@@ -0,0 +1,222 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import com.google.common.base.Joiner;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.remoting.Callable;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import net.coding.jenkins.plugin.CodingPushTrigger;
+import org.jenkinsci.remoting.RoleChecker;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache of webhook url path to the job it designates and the {@link CodingPushTrigger} of the job,
+ * so that dispatching a delivery doesn't walk the folders and the triggers of the job every time.
+ *
+ * <p>
+ * Only the canonical path of a job, i.e. its full name, is cached, so the size of the cache is bounded
+ * by the number of jobs. Entries are dropped when a job or one of its folders is renamed, moved,
+ * deleted or saved.
+ */
+public final class WebHookJobCache {
+    private static final Logger LOGGER = Logger.getLogger(WebHookJobCache.class.getName());
+
+    private static final WebHookJobCache INSTANCE = new WebHookJobCache();
+
+    private final Map<String, Resolution> resolutions = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on every invalidation, so that a resolution that raced with one doesn't store the job
+     * and trigger it read before the change.
+     */
+    private long generation;
+
+    private WebHookJobCache() { }
+
+    public static WebHookJobCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Resolves the job designated by the url path {@code projectName/restOfPathParts}.
+     *
+     * @return {@code null} if there is no such job
+     */
+    public Resolution resolve(String projectName, List<String> restOfPathParts) {
+        String path = restOfPathParts.isEmpty() ? projectName
+                : projectName + '/' + Joiner.on('/').join(restOfPathParts);
+        Resolution resolution = resolutions.get(path);
+        if (resolution != null) {
+            return resolution;
+        }
+        long start = generation();
+        Job<?, ?> job = load(projectName, restOfPathParts.iterator());
+        if (job == null) {
+            return null;
+        }
+        resolution = new Resolution(job, CodingPushTrigger.getFromJob(job));
+        if (path.equals(job.getFullName())) {
+            cache(path, resolution, start);
+        }
+        return resolution;
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches the resolution unless the cache has been invalidated since {@code start}.
+     */
+    synchronized boolean cache(String path, Resolution resolution, long start) {
+        if (start != generation) {
+            return false;
+        }
+        resolutions.put(path, resolution);
+        return true;
+    }
+
+    Resolution getIfPresent(String path) {
+        return resolutions.get(path);
+    }
+
+    /**
+     * Looks up the trigger of a job, from the cache if it has been resolved already.
+     */
+    public CodingPushTrigger getTrigger(Job<?, ?> job) {
+        Resolution resolution = resolutions.get(job.getFullName());
+        if (resolution != null && resolution.getJob() == job) {
+            return resolution.getTrigger();
+        }
+        return CodingPushTrigger.getFromJob(job);
+    }
+
+    synchronized void invalidate(String fullName) {
+        generation++;
+        resolutions.remove(fullName);
+        String prefix = fullName + '/';
+        for (String path : resolutions.keySet()) {
+            if (path.startsWith(prefix)) {
+                resolutions.remove(path);
+            }
+        }
+    }
+
+    synchronized void invalidateAll() {
+        generation++;
+        resolutions.clear();
+    }
+
+    private static Job<?, ?> load(final String projectName, final Iterator<String> restOfPathParts) {
+        return ACL.impersonate(ACL.SYSTEM, new Callable<Job<?, ?>, RuntimeException>() {
+            @Override
+            public Job<?, ?> call() throws RuntimeException {
+                final Jenkins jenkins = Jenkins.getInstance();
+                if (jenkins != null) {
+                    Item item = jenkins.getItemByFullName(projectName);
+                    while (item instanceof ItemGroup<?> && !(item instanceof Job<?, ?>) && restOfPathParts.hasNext()) {
+                        item = jenkins.getItem(restOfPathParts.next(), (ItemGroup<?>) item);
+                    }
+                    if (item instanceof Job<?, ?>) {
+                        return (Job<?, ?>) item;
+                    }
+                }
+                LOGGER.log(Level.INFO, "No project found: {0}, {1}",
+                        new String[]{projectName, Joiner.on('/').join(restOfPathParts)});
+                return null;
+            }
+
+            @Override
+            public void checkRoles(RoleChecker checker) throws SecurityException {
+
+            }
+        });
+    }
+
+    public static final class Resolution {
+        private final Job<?, ?> job;
+        private final CodingPushTrigger trigger;
+
+        Resolution(Job<?, ?> job, CodingPushTrigger trigger) {
+            this.job = job;
+            this.trigger = trigger;
+        }
+
+        public Job<?, ?> getJob() {
+            return job;
+        }
+
+        /**
+         * @return {@code null} if the job has no {@link CodingPushTrigger}
+         */
+        public CodingPushTrigger getTrigger() {
+            return trigger;
+        }
+    }
+
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onLoaded() {
+            INSTANCE.invalidateAll();
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            INSTANCE.invalidate(item.getFullName());
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            INSTANCE.invalidate(item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            INSTANCE.invalidate(oldFullName);
+            INSTANCE.invalidate(newFullName);
+        }
+    }
+
+    @Extension
+    public static class SaveableListenerImpl extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Item) {
+                INSTANCE.invalidate(((Item) o).getFullName());
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import net.coding.jenkins.plugin.Utils;
+import net.coding.jenkins.plugin.bean.WebHookTask;
+import net.coding.jenkins.plugin.common.gson.JSON;
+import net.coding.jenkins.plugin.model.Commit;
+import net.coding.jenkins.plugin.model.MergeRequest;
+import net.coding.jenkins.plugin.model.Ref;
+import net.coding.jenkins.plugin.model.Repository;
+import net.coding.jenkins.plugin.model.User;
+import net.coding.jenkins.plugin.model.event.Push;
+import org.apache.commons.io.IOUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streaming decoder for webhook payloads.
+ *
+ * <p>
+ * Only the fields read by {@link TriggerHandler} and {@link net.coding.jenkins.plugin.cause.CauseData}
+ * are materialized, everything else is skipped while reading. Of the pushed commits only the
+ * last one is kept, as it is the one checked for {@code [ci-skip]}.
+ */
+public final class WebHookPayloadDecoder {
+
+    private WebHookPayloadDecoder() { }
+
+    public static Push decodePush(Reader reader) throws IOException {
+        JsonReader in = newJsonReader(reader);
+        if (!beginObject(in)) {
+            return null;
+        }
+        Push push = new Push();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "ref":
+                    push.setRef(nextString(in));
+                    break;
+                case "before":
+                    push.setBefore(nextString(in));
+                    break;
+                case "after":
+                    push.setAfter(nextString(in));
+                    break;
+                case "commits":
+                    push.setCommits(readLastCommit(in));
+                    break;
+                case "head_commit":
+                    push.setHead_commit(readCommit(in));
+                    break;
+                case "repository":
+                    push.setRepository(readRepository(in));
+                    break;
+                case "sender":
+                    push.setSender(readUser(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return push;
+    }
+
+    public static net.coding.jenkins.plugin.model.event.MergeRequest decodeMergeRequest(Reader reader)
+            throws IOException {
+        JsonReader in = newJsonReader(reader);
+        if (!beginObject(in)) {
+            return null;
+        }
+        net.coding.jenkins.plugin.model.event.MergeRequest event =
+                new net.coding.jenkins.plugin.model.event.MergeRequest();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "action":
+                    event.setAction(nextString(in));
+                    break;
+                case "number":
+                    event.setNumber(nextLong(in));
+                    break;
+                case "mergeRequest":
+                    event.setMergeRequest(readMergeRequest(in));
+                    break;
+                case "repository":
+                    event.setRepository(readRepository(in));
+                    break;
+                case "sender":
+                    event.setSender(readUser(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return event;
+    }
+
+    /**
+     * Full data binding with the shared {@link JSON#getGson()} instance, for payloads that
+     * have no dedicated streaming decoder.
+     */
+    public static <T> T decode(Reader reader, Class<T> type) {
+        return JSON.getGson().fromJson(reader, type);
+    }
+
+    private static MergeRequest readMergeRequest(JsonReader in) throws IOException {
+        if (!beginObject(in)) {
+            return null;
+        }
+        MergeRequest mr = new MergeRequest();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    mr.setId(nextLong(in));
+                    break;
+                case "number":
+                    mr.setNumber(nextLong(in));
+                    break;
+                case "title":
+                    mr.setTitle(nextString(in));
+                    break;
+                case "body":
+                    mr.setBody(nextString(in));
+                    break;
+                case "state":
+                    mr.setState(nextString(in));
+                    break;
+                case "html_url":
+                    mr.setHtml_url(nextString(in));
+                    break;
+                case "merge_commit_sha":
+                    mr.setMerge_commit_sha(nextString(in));
+                    break;
+                case "user":
+                    mr.setUser(readUser(in));
+                    break;
+                case "head":
+                    mr.setHead(readRef(in));
+                    break;
+                case "base":
+                    mr.setBase(readRef(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return mr;
+    }
+
+    private static Ref readRef(JsonReader in) throws IOException {
+        if (!beginObject(in)) {
+            return null;
+        }
+        Ref ref = new Ref();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "ref":
+                    ref.setRef(nextString(in));
+                    break;
+                case "sha":
+                    ref.setSha(nextString(in));
+                    break;
+                case "repo":
+                    ref.setRepo(readRepository(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return ref;
+    }
+
+    private static Repository readRepository(JsonReader in) throws IOException {
+        if (!beginObject(in)) {
+            return null;
+        }
+        Repository repository = new Repository();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    repository.setId((int) nextLong(in));
+                    break;
+                case "name":
+                    repository.setName(nextString(in));
+                    break;
+                case "full_name":
+                    repository.setFull_name(nextString(in));
+                    break;
+                case "owner":
+                    repository.setOwner(readUser(in));
+                    break;
+                case "html_url":
+                    repository.setHtml_url(nextString(in));
+                    break;
+                case "url":
+                    repository.setUrl(nextString(in));
+                    break;
+                case "clone_url":
+                    repository.setClone_url(nextString(in));
+                    break;
+                case "ssh_url":
+                    repository.setSsh_url(nextString(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return repository;
+    }
+
+    private static User readUser(JsonReader in) throws IOException {
+        if (!beginObject(in)) {
+            return null;
+        }
+        User user = new User();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "login":
+                    user.setLogin(nextString(in));
+                    break;
+                case "name":
+                    user.setName(nextString(in));
+                    break;
+                case "html_url":
+                    user.setHtml_url(nextString(in));
+                    break;
+                case "avatar_url":
+                    user.setAvatar_url(nextString(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return user;
+    }
+
+    private static List<Commit> readLastCommit(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Commit last = null;
+        in.beginArray();
+        while (in.hasNext()) {
+            last = readCommit(in);
+        }
+        in.endArray();
+        return last == null ? Collections.<Commit>emptyList() : Collections.singletonList(last);
+    }
+
+    private static Commit readCommit(JsonReader in) throws IOException {
+        if (!beginObject(in)) {
+            return null;
+        }
+        Commit commit = new Commit();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    commit.setId(nextString(in));
+                    break;
+                case "message":
+                    commit.setMessage(nextString(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return commit;
+    }
+
+    private static JsonReader newJsonReader(Reader reader) {
+        JsonReader in = new JsonReader(reader);
+        // same leniency as Gson#fromJson
+        in.setLenient(true);
+        return in;
+    }
+
+    /**
+     * @return {@code false} if the value is {@code null}, which is consumed
+     */
+    private static boolean beginObject(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL || token == JsonToken.END_DOCUMENT) {
+            if (token == JsonToken.NULL) {
+                in.nextNull();
+            }
+            return false;
+        }
+        in.beginObject();
+        return true;
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static long nextLong(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        return in.nextLong();
+    }
+
+    /**
+     * Reads the raw request body, which has to be kept around for signature verification
+     * before anything is decoded.
+     */
+    public static void readPayload(HttpServletRequest request, WebHookTask task) throws IOException {
+        int length = request.getContentLength();
+        InputStream in = request.getInputStream();
+        byte[] payload = length > 0 ? IOUtils.toByteArray(in, length) : IOUtils.toByteArray(in);
+        task.setPayload(payload, Utils.getRequestCharset(request));
+    }
+
+    /**
+     * Streams the raw payload of the task to a decoder.
+     */
+    public static Reader reader(WebHookTask task) {
+        byte[] payload = task.getPayload() == null ? new byte[0] : task.getPayload();
+        return new InputStreamReader(new ByteArrayInputStream(payload), task.getCharset());
+    }
+}
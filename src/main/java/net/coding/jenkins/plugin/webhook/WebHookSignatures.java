@@ -0,0 +1,132 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * HMAC verification of {@code X-Coding-Signature} headers over the raw request body.
+ *
+ * <p>
+ * Initialized {@link Mac} instances are pooled per secret, as looking up the provider and
+ * expanding the key costs more than hashing a typical payload.
+ */
+public final class WebHookSignatures {
+    private static final Logger LOGGER = Logger.getLogger(WebHookSignatures.class.getName());
+
+    public static final String SHA1_PREFIX = "sha1=";
+    public static final String SHA256_PREFIX = "sha256=";
+
+    private static final String HMAC_SHA1 = "HmacSHA1";
+    private static final String HMAC_SHA256 = "HmacSHA256";
+
+    private static final Cache<String, Queue<Mac>> MACS = CacheBuilder.newBuilder().maximumSize(256).build();
+
+    private WebHookSignatures() { }
+
+    /**
+     * @param signature value of the signature header, {@code sha1=<hex>} or {@code sha256=<hex>}
+     * @param payload raw request body
+     * @param secret webHook token configured for the job
+     */
+    public static boolean isValid(String signature, byte[] payload, String secret) {
+        if (StringUtils.isEmpty(signature)) {
+            LOGGER.log(Level.FINE, "Got Empty signature");
+            return false;
+        }
+        String algorithm;
+        String hex;
+        if (signature.startsWith(SHA256_PREFIX)) {
+            algorithm = HMAC_SHA256;
+            hex = signature.substring(SHA256_PREFIX.length());
+        } else if (signature.startsWith(SHA1_PREFIX)) {
+            algorithm = HMAC_SHA1;
+            hex = signature.substring(SHA1_PREFIX.length());
+        } else {
+            LOGGER.log(Level.FINE, "Invalid signature, should start with sha1= or sha256=, got {0}", signature);
+            return false;
+        }
+        byte[] expected;
+        try {
+            expected = Hex.decodeHex(hex.toCharArray());
+        } catch (DecoderException e) {
+            LOGGER.log(Level.FINE, "Invalid signature, not a hex digest: {0}", signature);
+            return false;
+        }
+        boolean valid = MessageDigest.isEqual(expected, hmac(algorithm, secret, payload == null ? new byte[0] : payload));
+        if (!valid) {
+            LOGGER.log(Level.FINE, "Invalid signature, got {0}", signature);
+        }
+        return valid;
+    }
+
+    private static byte[] hmac(final String algorithm, final String secret, byte[] payload) {
+        Queue<Mac> pool;
+        try {
+            // keyed by a digest, so that the secrets are only kept inside the initialized Macs
+            pool = MACS.get(algorithm + ':' + DigestUtils.sha256Hex(secret), new Callable<Queue<Mac>>() {
+                @Override
+                public Queue<Mac> call() {
+                    return new ConcurrentLinkedQueue<>();
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+        Mac mac = pool.poll();
+        if (mac == null) {
+            mac = newMac(algorithm, secret);
+        }
+        try {
+            // doFinal resets the Mac, so it can go straight back to the pool
+            return mac.doFinal(payload);
+        } finally {
+            pool.offer(mac);
+        }
+    }
+
+    private static Mac newMac(String algorithm, String secret) {
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(new SecretKeySpec(secret.getBytes(UTF_8), algorithm));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize " + algorithm, e);
+        }
+    }
+}
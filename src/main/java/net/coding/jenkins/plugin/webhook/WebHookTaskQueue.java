@@ -0,0 +1,258 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import hudson.init.Terminator;
+import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.kohsuke.stapler.HttpResponses;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded in-memory queue that decouples webhook ingestion from build scheduling.
+ *
+ * <p>
+ * The servlet thread only does the cheap work (job lookup, header checks, parsing) and hands
+ * the rest over to a small pool of workers, so that a burst of deliveries does not exhaust
+ * the request threads of Jenkins.
+ */
+public final class WebHookTaskQueue {
+    private static final Logger LOGGER = Logger.getLogger(WebHookTaskQueue.class.getName());
+
+    private static final String PROPERTY_PREFIX = WebHookTaskQueue.class.getName();
+
+    /**
+     * What to do when the queue is full.
+     */
+    public enum RejectionPolicy {
+        /**
+         * Answer 503 so that Coding redelivers the event later.
+         */
+        REJECT,
+        /**
+         * Process the task on the servlet thread, as if the queue did not exist.
+         */
+        CALLER_RUNS,
+        /**
+         * Drop the oldest pending task to make room for the new one. The dropped delivery has already
+         * been answered, so Coding won't redeliver it; it is logged as a warning.
+         */
+        DISCARD_OLDEST
+    }
+
+    /**
+     * What happened to a submitted task.
+     */
+    public enum Submission {
+        /**
+         * Queued for a worker.
+         */
+        QUEUED,
+        /**
+         * Already run on the calling thread, because the queue is disabled or full with
+         * {@link RejectionPolicy#CALLER_RUNS}.
+         */
+        RAN,
+        /**
+         * Not accepted, the queue is full.
+         */
+        REJECTED
+    }
+
+    /**
+     * Maximum number of tasks waiting for a worker.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int CAPACITY = Integer.getInteger(PROPERTY_PREFIX + ".capacity", 1000);
+
+    /**
+     * Number of worker threads, 0 disables the queue and handles every task on the servlet thread.
+     */
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static int WORKERS = Integer.getInteger(PROPERTY_PREFIX + ".workers",
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+
+    @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
+    public static RejectionPolicy REJECTION_POLICY = rejectionPolicy(
+            System.getProperty(PROPERTY_PREFIX + ".rejectionPolicy"));
+
+    private static volatile ThreadPoolExecutor executor;
+
+    private WebHookTaskQueue() { }
+
+    /**
+     * Submits the task as {@link ACL#SYSTEM}.
+     *
+     * @return whether the task has been queued, run on the calling thread according to the
+     *      {@link RejectionPolicy}, or rejected
+     */
+    public static Submission submit(final Runnable task) {
+        ThreadPoolExecutor pool = executor();
+        if (pool == null) {
+            ACL.impersonate(ACL.SYSTEM, task);
+            return Submission.RAN;
+        }
+        SystemTask systemTask = new SystemTask(task);
+        try {
+            pool.execute(systemTask);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.WARNING, "WebHook queue is full ({0} pending), rejecting task", pool.getQueue().size());
+            return Submission.REJECTED;
+        }
+        // CALLER_RUNS has run it before execute returned
+        return systemTask.thread == Thread.currentThread() ? Submission.RAN : Submission.QUEUED;
+    }
+
+    private static final class SystemTask implements Runnable {
+        private final Runnable task;
+        private final Thread submitter = Thread.currentThread();
+        private volatile Thread thread;
+
+        SystemTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            if (thread == submitter) {
+                // CALLER_RUNS, the failure answers the request like when there are no workers
+                ACL.impersonate(ACL.SYSTEM, task);
+                return;
+            }
+            try {
+                ACL.impersonate(ACL.SYSTEM, task);
+            } catch (HttpResponses.HttpResponseException e) {
+                // there is nobody left to answer, the response has already been sent
+                LOGGER.log(Level.INFO, "WebHook task finished with response: {0}", e);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Unexpected exception while handling webHook task", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    /**
+     * Whether tasks are handed over to the workers instead of being run on the servlet thread.
+     */
+    public static boolean isAsync() {
+        return WORKERS > 0;
+    }
+
+    /**
+     * Number of tasks waiting for a worker.
+     */
+    public static int getQueueDepth() {
+        ThreadPoolExecutor pool = executor;
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    /**
+     * Number of tasks currently being processed.
+     */
+    public static int getActiveCount() {
+        ThreadPoolExecutor pool = executor;
+        return pool == null ? 0 : pool.getActiveCount();
+    }
+
+    private static ThreadPoolExecutor executor() {
+        if (!isAsync()) {
+            return null;
+        }
+        ThreadPoolExecutor pool = executor;
+        if (pool == null) {
+            synchronized (WebHookTaskQueue.class) {
+                pool = executor;
+                if (pool == null) {
+                    pool = new ThreadPoolExecutor(WORKERS, WORKERS, 60L, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(Math.max(1, CAPACITY)),
+                            new NamingThreadFactory(new DaemonThreadFactory(), "Coding WebHook worker"),
+                            rejectionHandler(REJECTION_POLICY));
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    private static RejectedExecutionHandler rejectionHandler(RejectionPolicy policy) {
+        switch (policy) {
+            case CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case DISCARD_OLDEST:
+                return new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+                        if (e.isShutdown()) {
+                            return;
+                        }
+                        Runnable dropped = e.getQueue().poll();
+                        if (dropped != null) {
+                            // already answered as accepted, so this is the only trace of the delivery
+                            LOGGER.log(Level.WARNING, "WebHook queue is full, dropping {0}", dropped);
+                        }
+                        e.execute(r);
+                    }
+                };
+            default:
+                return new ThreadPoolExecutor.AbortPolicy();
+        }
+    }
+
+    private static RejectionPolicy rejectionPolicy(String value) {
+        if (value == null) {
+            return RejectionPolicy.REJECT;
+        }
+        try {
+            return RejectionPolicy.valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Unknown webHook queue rejection policy: {0}", value);
+            return RejectionPolicy.REJECT;
+        }
+    }
+
+    @Terminator
+    public static void shutdown() throws InterruptedException {
+        ThreadPoolExecutor pool = executor;
+        if (pool == null) {
+            return;
+        }
+        executor = null;
+        pool.shutdown();
+        if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+            LOGGER.log(Level.WARNING, "{0} webHook tasks dropped on shutdown", pool.shutdownNow().size());
+        }
+    }
+}
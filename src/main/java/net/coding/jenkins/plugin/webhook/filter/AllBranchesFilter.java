@@ -8,4 +8,9 @@ class AllBranchesFilter implements BranchFilter {
     public boolean isBranchAllowed(String branchName) {
         return true;
     }
+
+    @Override
+    public boolean isBranchAllowed(String branchName, String fullRefName) {
+        return true;
+    }
 }
@@ -6,4 +6,9 @@ package net.coding.jenkins.plugin.webhook.filter;
 public interface BranchFilter {
 
     boolean isBranchAllowed(String branchName);
+
+    /**
+     * Whether a branch is allowed by either its short name or its full ref name.
+     */
+    boolean isBranchAllowed(String branchName, String fullRefName);
 }
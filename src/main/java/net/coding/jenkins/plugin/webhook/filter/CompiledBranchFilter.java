@@ -0,0 +1,47 @@
+package net.coding.jenkins.plugin.webhook.filter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Base of the filters whose specs are compiled once when the trigger is configured or loaded.
+ * The decisions for the latest branches are remembered, as the same few branches keep
+ * being pushed to.
+ */
+abstract class CompiledBranchFilter implements BranchFilter {
+
+    private static final int DECISION_CACHE_SIZE = 128;
+
+    private final Cache<String, Boolean> decisions = CacheBuilder.newBuilder()
+            .maximumSize(DECISION_CACHE_SIZE).build();
+
+    @Override
+    public boolean isBranchAllowed(String branchName) {
+        if (branchName == null) {
+            return matches(null);
+        }
+        Boolean allowed = decisions.getIfPresent(branchName);
+        if (allowed == null) {
+            allowed = matches(branchName);
+            decisions.put(branchName, allowed);
+        }
+        return allowed;
+    }
+
+    @Override
+    public boolean isBranchAllowed(String branchName, String fullRefName) {
+        if (branchName == null || fullRefName == null) {
+            return isBranchAllowed(branchName) || isBranchAllowed(fullRefName);
+        }
+        // '\n' can't be part of a ref name
+        String key = branchName + '\n' + fullRefName;
+        Boolean allowed = decisions.getIfPresent(key);
+        if (allowed == null) {
+            allowed = matches(branchName) || matches(fullRefName);
+            decisions.put(key, allowed);
+        }
+        return allowed;
+    }
+
+    protected abstract boolean matches(String branchName);
+}
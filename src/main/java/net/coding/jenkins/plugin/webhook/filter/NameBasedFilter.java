@@ -2,18 +2,17 @@ package net.coding.jenkins.plugin.webhook.filter;
 
 import com.google.common.base.Splitter;
 
-import org.springframework.util.AntPathMatcher;
-
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /**
  * @author Robin Müller
  */
-class NameBasedFilter implements BranchFilter {
+class NameBasedFilter extends CompiledBranchFilter {
 
-    private final List<String> includedBranches;
-    private final List<String> excludedBranches;
+    private final List<AntPattern> includedBranches;
+    private final List<AntPattern> excludedBranches;
 
     public NameBasedFilter(String includedBranches, String excludedBranches) {
         this.includedBranches = convert(includedBranches);
@@ -21,7 +20,7 @@ class NameBasedFilter implements BranchFilter {
     }
 
     @Override
-    public boolean isBranchAllowed(String branchName) {
+    protected boolean matches(String branchName) {
         return hasNoBranchSpecs() || (isBranchNotExcluded(branchName) && isBranchIncluded(branchName));
     }
 
@@ -30,9 +29,8 @@ class NameBasedFilter implements BranchFilter {
     }
 
     private boolean isBranchNotExcluded(String branchName) {
-        AntPathMatcher matcher = new AntPathMatcher();
-        for (String excludePattern : excludedBranches) {
-            if (matcher.match(excludePattern, branchName)) {
+        for (AntPattern excludePattern : excludedBranches) {
+            if (excludePattern.matches(branchName)) {
                 return false;
             }
         }
@@ -40,20 +38,78 @@ class NameBasedFilter implements BranchFilter {
     }
 
     private boolean isBranchIncluded(String branchName) {
-        AntPathMatcher matcher = new AntPathMatcher();
-        for (String includePattern : includedBranches) {
-            if (matcher.match(includePattern, branchName)) {
+        for (AntPattern includePattern : includedBranches) {
+            if (includePattern.matches(branchName)) {
                 return true;
             }
         }
         return includedBranches.isEmpty();
     }
 
-    private List<String> convert(String commaSeparatedString) {
-        ArrayList<String> result = new ArrayList<>();
+    private List<AntPattern> convert(String commaSeparatedString) {
+        ArrayList<AntPattern> result = new ArrayList<>();
+        if (commaSeparatedString == null) {
+            return result;
+        }
         for (String s : Splitter.on(',').omitEmptyStrings().trimResults().split(commaSeparatedString)) {
-            result.add(s);
+            result.add(new AntPattern(s));
         }
         return result;
     }
+
+    /**
+     * Ant style path pattern, as matched by {@code AntPathMatcher}, compiled into a regex:
+     * {@code ?} and {@code *} match within a path segment and {@code **} matches any number of segments.
+     *
+     * <p>
+     * Both the pattern and the branch name are compared segment by segment, so each segment is
+     * written with a leading {@code /} and empty segments are dropped.
+     */
+    static final class AntPattern {
+        private final boolean absolute;
+        private final Pattern regex;
+
+        AntPattern(String pattern) {
+            this.absolute = pattern.startsWith("/");
+            StringBuilder sb = new StringBuilder();
+            for (String token : tokenize(pattern)) {
+                if (token.equals("**")) {
+                    sb.append("(?:/[^/]*)*");
+                    continue;
+                }
+                sb.append('/');
+                StringBuilder literal = new StringBuilder();
+                for (char c : token.toCharArray()) {
+                    if (c == '*' || c == '?') {
+                        if (literal.length() > 0) {
+                            sb.append(Pattern.quote(literal.toString()));
+                            literal.setLength(0);
+                        }
+                        sb.append(c == '*' ? "[^/]*" : "[^/]");
+                    } else {
+                        literal.append(c);
+                    }
+                }
+                if (literal.length() > 0) {
+                    sb.append(Pattern.quote(literal.toString()));
+                }
+            }
+            this.regex = Pattern.compile(sb.toString());
+        }
+
+        boolean matches(String path) {
+            if (path == null || path.startsWith("/") != absolute) {
+                return false;
+            }
+            StringBuilder normalized = new StringBuilder();
+            for (String token : tokenize(path)) {
+                normalized.append('/').append(token);
+            }
+            return regex.matcher(normalized).matches();
+        }
+
+        private static Iterable<String> tokenize(String path) {
+            return Splitter.on('/').trimResults().omitEmptyStrings().split(path);
+        }
+    }
 }
@@ -2,19 +2,41 @@ package net.coding.jenkins.plugin.webhook.filter;
 
 import org.apache.commons.lang.StringUtils;
 
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
 /**
  * @author Robin Müller
  */
-class RegexBasedFilter implements BranchFilter {
+class RegexBasedFilter extends CompiledBranchFilter {
+    private static final Logger LOGGER = Logger.getLogger(RegexBasedFilter.class.getName());
 
     private final String regex;
+    private final Pattern pattern;
+    private final boolean invalid;
 
     public RegexBasedFilter(String regex) {
         this.regex = regex;
+        Pattern compiled = null;
+        if (StringUtils.isNotEmpty(regex)) {
+            try {
+                compiled = Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                // lets no branch through, where matching used to fail every delivery with an error
+                LOGGER.log(Level.WARNING, "Invalid target branch regex {0}, no branch will trigger a build", regex);
+            }
+        }
+        this.pattern = compiled;
+        this.invalid = StringUtils.isNotEmpty(regex) && compiled == null;
     }
 
     @Override
-    public boolean isBranchAllowed(String branchName) {
-        return StringUtils.isEmpty(branchName) || StringUtils.isEmpty(regex) || branchName.matches(regex);
+    protected boolean matches(String branchName) {
+        if (StringUtils.isEmpty(branchName) || StringUtils.isEmpty(regex)) {
+            return true;
+        }
+        return !invalid && pattern.matcher(branchName).matches();
     }
 }
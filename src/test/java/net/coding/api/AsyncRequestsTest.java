@@ -0,0 +1,70 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.*;
+
+public class AsyncRequestsTest {
+    private static final Callable<Boolean> IS_BACKGROUND = new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+            return RateLimitHandler.isBackground();
+        }
+    };
+
+    @Test
+    public void keepsBackgroundFlag() throws Exception {
+        assertFalse(AsyncRequests.await(AsyncRequests.supply(IS_BACKGROUND)));
+        boolean background = RateLimitHandler.inBackground(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                return AsyncRequests.await(AsyncRequests.supply(IS_BACKGROUND));
+            }
+        });
+        assertTrue(background);
+    }
+
+    @Test
+    public void unwrapsPagingFailure() {
+        try {
+            AsyncRequests.await(AsyncRequests.supply(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    // as the paging iterators report a failed page
+                    throw new Error(new IOException("down"));
+                }
+            }));
+            fail();
+        } catch (IOException e) {
+            assertEquals("down", e.getMessage());
+        }
+    }
+}
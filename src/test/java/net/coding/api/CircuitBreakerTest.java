@@ -0,0 +1,88 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+    @Test
+    public void opensAndCloses() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("test");
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            breaker.acquire(0);
+            breaker.release(false, 0, 0);
+        }
+        assertTrue(breaker.isOpen());
+        try {
+            breaker.acquire(1);
+            fail();
+        } catch (CircuitOpenException expected) {
+        }
+        // a single trial once the open time is over
+        breaker.acquire(CircuitBreaker.OPEN_TIME);
+        try {
+            breaker.acquire(CircuitBreaker.OPEN_TIME);
+            fail();
+        } catch (CircuitOpenException expected) {
+        }
+        breaker.release(true, 0, CircuitBreaker.OPEN_TIME);
+        assertFalse(breaker.isOpen());
+        breaker.acquire(CircuitBreaker.OPEN_TIME);
+    }
+
+    @Test
+    public void hedgeDelay() {
+        CircuitBreaker breaker = new CircuitBreaker("test");
+        assertEquals(-1, breaker.getHedgeDelay());
+        for (int i = 1; i <= 100; i++) {
+            breaker.release(true, i * 1000000L, 0);
+        }
+        assertEquals(95, breaker.getHedgeDelay());
+    }
+
+    @Test
+    public void serverFailures() {
+        assertTrue(CircuitBreaker.isServerFailure(new IOException()));
+        assertTrue(CircuitBreaker.isServerFailure(new HttpException(502, "Bad Gateway", "u", null)));
+        assertFalse(CircuitBreaker.isServerFailure(new HttpException(429, "Too Many Requests", "u", null)));
+        assertFalse(CircuitBreaker.isServerFailure(new FileNotFoundException()));
+        assertFalse(CircuitBreaker.isServerFailure(new CodingApiException(1, "denied", "u")));
+    }
+
+    @Test
+    public void endpointClass() throws Exception {
+        assertEquals("user", CircuitBreaker.endpointClass(new URL("https://coding.net/api/user/key/foo")));
+        assertEquals("current_user", CircuitBreaker.endpointClass(new URL("https://coding.net/api/current_user")));
+        assertEquals("repository", CircuitBreaker.endpointClass(new URL("https://coding.net/repos/foo/bar")));
+        assertEquals("repository", CircuitBreaker.endpointClass(new URL("https://coding.net/api/user/foo/project/bar/git")));
+    }
+}
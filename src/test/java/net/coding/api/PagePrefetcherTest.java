@@ -0,0 +1,83 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PagePrefetcherTest {
+    @Test
+    public void discardedFetchKeepsPermitUntilItReturns() throws Exception {
+        int concurrency = PagePrefetcher.CONCURRENCY;
+        PagePrefetcher.CONCURRENCY = 1;
+        try {
+            URL url = new URL("https://prefetch.coding.example/api/user/repos?page=2");
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            Future<String> page = PagePrefetcher.trySubmit(url, new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    started.countDown();
+                    release.await();
+                    return "page 2";
+                }
+            });
+            assertNotNull(page);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // the listing stops early, but the request is still running
+            page.cancel(false);
+            assertNull(PagePrefetcher.trySubmit(url, constant("page 3")));
+
+            release.countDown();
+            Future<String> next = null;
+            for (int i = 0; i < 500 && next == null; i++) {
+                Thread.sleep(10);
+                next = PagePrefetcher.trySubmit(url, constant("page 3"));
+            }
+            assertNotNull("permit released once the fetch returned", next);
+            assertEquals("page 3", next.get(5, TimeUnit.SECONDS));
+        } finally {
+            PagePrefetcher.CONCURRENCY = concurrency;
+        }
+    }
+
+    private static Callable<String> constant(final String value) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PersonCacheTest {
+    @Test
+    public void sharedByClients() throws Exception {
+        PersonCache cache = new PersonCache(10, 1, TimeUnit.HOURS);
+        Coding alice = client("alice", cache);
+        Coding bob = client("bob", cache);
+
+        CodingUser user = new CodingUser();
+        user.global_key = "carol";
+        user.root = alice;
+        cache.putUser(user);
+
+        assertSame(user, cache.getUser("carol", alice));
+        CodingUser copy = cache.getUser("carol", bob);
+        assertNotSame(user, copy);
+        assertEquals("carol", copy.getLogin());
+        assertSame(bob, copy.root);
+        assertSame(alice, user.root);
+
+        assertNull(cache.getUser("dave", bob));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void myselfNotShared() throws Exception {
+        PersonCache cache = new PersonCache(10, 1, TimeUnit.HOURS);
+        CodingMyself me = new CodingMyself();
+        me.global_key = "alice";
+        me.root = client("alice", cache);
+        cache.putUser(me);
+        assertEquals(0, cache.size());
+    }
+
+    private static Coding client(String login, PersonCache cache) throws Exception {
+        return new Coding("https://coding.net", login, login + "-token", null, null, null, null, false, cache);
+    }
+}
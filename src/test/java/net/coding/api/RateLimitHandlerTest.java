@@ -0,0 +1,132 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RateLimitHandlerTest {
+    @Test
+    public void interactiveUntilExhausted() {
+        RateLimitHandler.Budget budget = new RateLimitHandler.Budget();
+        budget.update(100, 2, 60000, 0);
+        assertEquals(0, budget.reserve(false, 0));
+        assertEquals(0, budget.reserve(false, 0));
+        // nothing left, wait for the reset
+        assertEquals(50000, budget.reserve(false, 10000));
+        // reset since
+        assertEquals(0, budget.reserve(false, 60000));
+    }
+
+    @Test
+    public void backgroundPacedBelowReserve() {
+        RateLimitHandler.Budget budget = new RateLimitHandler.Budget();
+        budget.update(100, 50, 60000, 0);
+        // plenty remaining
+        assertEquals(0, budget.reserve(true, 0));
+
+        budget.update(100, 10, 60000, 0);
+        // 10 requests over 60s, one every 6s
+        long first = budget.reserve(true, 0);
+        long second = budget.reserve(true, 0);
+        assertTrue(first > 0);
+        assertEquals(first + 6000, second, 1);
+        // interactive requests are not held back
+        assertEquals(0, budget.reserve(false, 0));
+    }
+
+    @Test
+    public void unknownBudget() {
+        assertEquals(0, new RateLimitHandler.Budget().reserve(true, 0));
+    }
+
+    @Test
+    public void interactiveRequestsDoNotWaitForTheReset() throws Exception {
+        URL url = new URL("https://ratelimit.coding.example/api/current_user");
+        long reset = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 600;
+        RateLimitHandler.ADAPTIVE.onResponse(connection(url, 0, reset, -1));
+        long start = System.currentTimeMillis();
+        try {
+            RateLimitHandler.ADAPTIVE.beforeRequest(url);
+            fail("held back until the reset");
+        } catch (IOException e) {
+            assertTrue(System.currentTimeMillis() - start < RateLimitHandler.MAX_INTERACTIVE_WAIT);
+        }
+    }
+
+    @Test
+    public void interactiveRequestsRetriedOnceAtMost() throws Exception {
+        URL url = new URL("https://retry.coding.example/api/current_user");
+        long start = System.currentTimeMillis();
+        try {
+            RateLimitHandler.ADAPTIVE.onError(new IOException("429"), connection(url, 0, -1, 60), 1);
+            fail("waited a minute to retry");
+        } catch (IOException e) {
+            assertTrue(System.currentTimeMillis() - start < RateLimitHandler.MAX_INTERACTIVE_WAIT);
+        }
+        try {
+            RateLimitHandler.ADAPTIVE.onError(new IOException("429"), connection(url, 0, -1, 0), 2);
+            fail("retried twice");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static HttpURLConnection connection(URL url, long remaining, long reset, long retryAfter) {
+        final Map<String, String> headers = new HashMap<>();
+        headers.put("X-RateLimit-Limit", "100");
+        headers.put("X-RateLimit-Remaining", String.valueOf(remaining));
+        headers.put("X-RateLimit-Reset", String.valueOf(reset));
+        headers.put("Retry-After", String.valueOf(retryAfter));
+        return new HttpURLConnection(url) {
+            @Override
+            public String getHeaderField(String name) {
+                return headers.get(name);
+            }
+
+            @Override
+            public void disconnect() {
+            }
+
+            @Override
+            public boolean usingProxy() {
+                return false;
+            }
+
+            @Override
+            public void connect() {
+            }
+        };
+    }
+}
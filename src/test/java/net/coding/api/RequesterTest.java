@@ -0,0 +1,80 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class RequesterTest {
+    private static final String URL = "https://coding.net/api/current_user";
+
+    @Test
+    public void readData() throws Exception {
+        CodingUser user = Requester.readResult(
+                json("{\"data\":{\"global_key\":\"user\",\"name\":\"User\",\"unknown\":[1]},\"code\":0}"),
+                CodingUser.class, null, URL);
+        assertEquals("user", user.getLogin());
+
+        String email = Requester.readResult(json("{\"code\":0,\"data\":\"user@coding.net\"}"), String.class, null, URL);
+        assertEquals("user@coding.net", email);
+    }
+
+    @Test
+    public void readArray() throws Exception {
+        CodingTeam[] teams = Requester.readResult(
+                json("{\"code\":0,\"data\":[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"}]}"), CodingTeam[].class, null, URL);
+        assertEquals(2, teams.length);
+        assertEquals("b", teams[1].getName());
+    }
+
+    @Test
+    public void errorCode() throws Exception {
+        try {
+            Requester.readResult(json("{\"code\":1000,\"msg\":{\"user_not_login\":\"not login\"}}"),
+                    CodingUser.class, null, URL);
+            fail();
+        } catch (CodingApiException e) {
+            assertEquals(1000, e.getCode());
+            assertEquals("{\"user_not_login\":\"not login\"}", e.getApiMessage());
+            assertEquals(URL, e.getUrl());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notJson() throws Exception {
+        Requester.readResult(json("<html></html>"), CodingUser.class, null, URL);
+    }
+
+    private static InputStream json(String s) {
+        return new ByteArrayInputStream(s.getBytes(UTF_8));
+    }
+}
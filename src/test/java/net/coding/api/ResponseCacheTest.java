@@ -0,0 +1,147 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+    private static final String K = ResponseCache.key("https://e.coding.net/api/current_user", "token k");
+    private static final String A = ResponseCache.key("https://e.coding.net/api/current_user", "token a");
+    private static final String B = ResponseCache.key("https://e.coding.net/api/current_user", "token b");
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("api-cache").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void keyDependsOnCredential() {
+        String url = "https://e.coding.net/api/current_user";
+        assertEquals(ResponseCache.key(url, "token a"), ResponseCache.key(url, "token a"));
+        assertFalse(ResponseCache.key(url, "token a").equals(ResponseCache.key(url, "token b")));
+        // written to disk as file names, so the credential must not show
+        assertTrue(ResponseCache.key(url, "token a").matches("[0-9a-f]{64}"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedByBytes() {
+        ResponseCache cache = new ResponseCache(10, null);
+        cache.put("a", "\"a\"", null, null, new byte[4]);
+        cache.put("b", "\"b\"", null, null, new byte[4]);
+        // a is now more recently used than b
+        assertNotNull(cache.get("a"));
+        cache.put("c", "\"c\"", null, null, new byte[4]);
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+
+        // larger than the whole cache, served but not kept
+        assertNotNull(cache.put("d", "\"d\"", null, null, new byte[11]));
+        assertNull(cache.get("d"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void keepsValidators() throws IOException {
+        ResponseCache cache = new ResponseCache(1024, null);
+        cache.put("k", "W/\"1\"", "Tue, 01 Sep 2026 00:00:00 GMT", "<https://e.coding.net/api?page=2>; rel=\"next\"",
+                "[1]".getBytes(UTF_8));
+        ResponseCache.Entry entry = cache.get("k");
+        assertEquals("W/\"1\"", entry.getEtag());
+        assertEquals("Tue, 01 Sep 2026 00:00:00 GMT", entry.getLastModified());
+        assertEquals("<https://e.coding.net/api?page=2>; rel=\"next\"", entry.getLink());
+        assertEquals("[1]", IOUtils.toString(entry.open(), UTF_8));
+    }
+
+    @Test
+    public void readsEntriesWrittenToDisk() throws IOException {
+        ResponseCache cache = new ResponseCache(1024, directory);
+        cache.put(K, null, "Tue, 01 Sep 2026 00:00:00 GMT", null, "{\"code\":0}".getBytes(UTF_8));
+        assertTrue(new File(directory, K).isFile());
+
+        // as after a restart
+        ResponseCache restarted = new ResponseCache(1024, directory);
+        ResponseCache.Entry entry = restarted.get(K);
+        assertNotNull(entry);
+        assertNull(entry.getEtag());
+        assertEquals("Tue, 01 Sep 2026 00:00:00 GMT", entry.getLastModified());
+        assertNull(entry.getLink());
+        assertEquals("{\"code\":0}", IOUtils.toString(entry.open(), UTF_8));
+        assertEquals(1, restarted.size());
+    }
+
+    @Test
+    public void evictionDeletesFromDisk() {
+        ResponseCache cache = new ResponseCache(4, directory);
+        cache.put(A, "\"a\"", null, null, new byte[4]);
+        cache.put(B, "\"b\"", null, null, new byte[4]);
+        assertFalse(new File(directory, A).exists());
+        assertTrue(new File(directory, B).isFile());
+    }
+
+    @Test
+    public void dropsCorruptedEntries() throws IOException {
+        Files.write(new File(directory, K).toPath(), new byte[]{1, 0});
+        ResponseCache cache = new ResponseCache(1024, directory);
+        assertNull(cache.get(K));
+        assertFalse(new File(directory, K).exists());
+    }
+
+    @Test
+    public void counts() {
+        ResponseCache cache = new ResponseCache(1024, null);
+        assertNull(cache.get("k"));
+        assertNull(cache.getStale("k"));
+        cache.put("k", "\"1\"", null, null, new byte[1]);
+        assertNotNull(cache.get("k"));
+        cache.hit();
+        assertNotNull(cache.getStale("k"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getRevalidationCount());
+        assertEquals(1, cache.getHitCount());
+        // a miss of a stale lookup isn't counted, the request failed anyway
+        assertEquals(1, cache.getStaleCount());
+    }
+}
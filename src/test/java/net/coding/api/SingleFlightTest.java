@@ -0,0 +1,140 @@
+/**
+ *  Copyright (c) 2011- Kohsuke Kawaguchi and other contributors
+ *  Copyright (c) 2016-present, Coding, Inc.
+ *
+ *  Permission is hereby granted, free of charge, to any person
+ *  obtaining a copy of this software and associated documentation
+ *  files (the "Software"), to deal in the Software without
+ *  restriction, including without limitation the rights to use,
+ *  copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following
+ *  conditions:
+ *
+ *  The above copyright notice and this permission notice shall be
+ *  included in all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ *  EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ *  OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ *  NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ *  HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ *  WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ *  OTHER DEALINGS IN THE SOFTWARE.
+ */
+package net.coding.api;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+    private static final Object OWNER = new Object();
+
+    @Test
+    public void sharesRequestInFlight() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final Callable<Object> request = new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                calls.incrementAndGet();
+                started.countDown();
+                release.await();
+                return new Object();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final AtomicReference<Thread> follower = new AtomicReference<>();
+            Future<Object> first = executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws IOException {
+                    return SingleFlight.call(OWNER, "key", request);
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<Object> second = executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws IOException {
+                    follower.set(Thread.currentThread());
+                    return SingleFlight.call(OWNER, "key", request);
+                }
+            });
+            // wait for the second caller to block on the request in flight
+            while (follower.get() == null || follower.get().getState() != Thread.State.WAITING) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            assertSame(first.get(), second.get());
+            assertEquals(1, calls.get());
+            assertEquals(0, SingleFlight.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void sharesFailure() {
+        try {
+            SingleFlight.call(OWNER, "key", new Callable<Object>() {
+                @Override
+                public Object call() throws IOException {
+                    throw new IOException("down");
+                }
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("down", e.getMessage());
+        }
+        assertEquals(0, SingleFlight.size());
+    }
+
+    @Test
+    public void doesNotShareAcrossOwners() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Object> first = executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws IOException {
+                    return SingleFlight.call(OWNER, "key", new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            started.countDown();
+                            release.await();
+                            return "first";
+                        }
+                    });
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            // another root must not get, and rewire, the objects of the request in flight
+            Object second = SingleFlight.call(new Object(), "key", new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return "second";
+                }
+            });
+            assertEquals("second", second);
+            release.countDown();
+            assertEquals("first", first.get());
+            assertEquals(0, SingleFlight.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
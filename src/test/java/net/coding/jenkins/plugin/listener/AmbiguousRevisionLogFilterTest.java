@@ -0,0 +1,87 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.listener;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class AmbiguousRevisionLogFilterTest {
+    private static final String AMBIGUOUS = "stderr: fatal: ambiguous argument 'b2': "
+            + "unknown revision or path not in the working tree.\n";
+
+    private final ByteArrayOutputStream console = new ByteArrayOutputStream();
+    private final AtomicInteger detections = new AtomicInteger();
+
+    @Test
+    public void detectsTheMatchingLineOnly() throws IOException {
+        byte[] log = ("Fetching changes from the remote Git repository\n"
+                + "stderr: fatal: ambiguous argument 'HEAD'\n"
+                + AMBIGUOUS
+                + "Finished: FAILURE\n").getBytes(UTF_8);
+        write(UTF_8, log);
+        assertEquals(1, detections.get());
+        assertArrayEquals(log, console.toByteArray());
+    }
+
+    @Test
+    public void detectsOnce() throws IOException {
+        write(UTF_8, (AMBIGUOUS + AMBIGUOUS).getBytes(UTF_8));
+        assertEquals(1, detections.get());
+    }
+
+    @Test
+    public void ignoresOtherLines() throws IOException {
+        write(UTF_8, "Checking out Revision b2 (refs/heads/master)\nFinished: SUCCESS\n".getBytes(UTF_8));
+        assertEquals(0, detections.get());
+    }
+
+    @Test
+    public void decodesWithTheCharsetOfTheRun() throws IOException {
+        Charset gbk = Charset.forName("GBK");
+        String path = "\u6587\u6863/\u8BF4\u660E.md";
+        byte[] log = ("\u6B63\u5728\u83B7\u53D6 " + path + "\n"
+                + AMBIGUOUS.replace("'b2'", "'" + path + "'")).getBytes(gbk);
+        write(gbk, log);
+        assertEquals(1, detections.get());
+        assertArrayEquals(log, console.toByteArray());
+    }
+
+    private void write(Charset charset, byte[] log) throws IOException {
+        OutputStream out = new AmbiguousRevisionLogFilter.DetectingOutputStream(console, charset, new Runnable() {
+            @Override
+            public void run() {
+                detections.incrementAndGet();
+            }
+        });
+        // in small chunks, as the console arrives
+        for (int i = 0; i < log.length; i += 7) {
+            out.write(log, i, Math.min(7, log.length - i));
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.listener;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.coding.jenkins.plugin.bean.ResultNote;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class ResultNoteOutboxTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private int compactionThreshold;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "result-notes.log");
+        compactionThreshold = ResultNoteOutbox.COMPACTION_THRESHOLD;
+    }
+
+    @After
+    public void tearDown() {
+        ResultNoteOutbox.COMPACTION_THRESHOLD = compactionThreshold;
+    }
+
+    @Test
+    public void jobsBuildingTheSameCommitKeepTheirNotes() {
+        assertNotEquals(ResultNoteOutbox.key(note("a", "c1")), ResultNoteOutbox.key(note("b", "c1")));
+        assertEquals(ResultNoteOutbox.key(note("a", "c1")), ResultNoteOutbox.key(note("a", "c1")));
+
+        ResultNoteOutbox outbox = new ResultNoteOutbox(file);
+        outbox.put(note("a", "c1"));
+        outbox.put(note("b", "c1"));
+        // a later build of the same job supersedes its earlier note
+        outbox.put(note("a", "c1"));
+        assertEquals(2, outbox.getPendingCount());
+    }
+
+    @Test
+    public void putReplayDone() {
+        ResultNote a = note("a", "c1");
+        ResultNote b = note("b", "c1");
+        ResultNoteOutbox outbox = new ResultNoteOutbox(file);
+        outbox.put(a);
+        outbox.put(b);
+        outbox.flush();
+
+        // as after a restart
+        ResultNoteOutbox replayed = new ResultNoteOutbox(file);
+        assertEquals(2, replayed.getPendingCount());
+        assertTrue(replayed.isCurrent(a));
+        assertTrue(replayed.isCurrent(b));
+
+        replayed.completed(a, ResultNotePublisher.Outcome.SENT);
+        assertFalse(replayed.isCurrent(a));
+        // given up on, left for the next replay
+        replayed.completed(b, ResultNotePublisher.Outcome.RETRY);
+        assertEquals(1, replayed.getPendingCount());
+        replayed.flush();
+
+        ResultNoteOutbox again = new ResultNoteOutbox(file);
+        assertEquals(1, again.getPendingCount());
+        assertFalse(again.isCurrent(a));
+        assertTrue(again.isCurrent(b));
+    }
+
+    @Test
+    public void compaction() throws Exception {
+        ResultNoteOutbox.COMPACTION_THRESHOLD = 6;
+        ResultNoteOutbox outbox = new ResultNoteOutbox(file);
+        ResultNote kept = note("kept", "c0");
+        outbox.put(kept);
+        outbox.flush();
+        for (int i = 1; i <= 3; i++) {
+            ResultNote note = note("job", "c" + i);
+            outbox.put(note);
+            outbox.flush();
+            outbox.completed(note, ResultNotePublisher.Outcome.SENT);
+            outbox.flush();
+        }
+
+        // compacted by the last done, the 7th record, into the pending note only
+        List<String> lines = Files.readAllLines(file.toPath(), UTF_8);
+        assertEquals(1, lines.size());
+        JsonObject record = new JsonParser().parse(lines.get(0)).getAsJsonObject();
+        assertEquals("put", record.get("op").getAsString());
+        assertEquals(ResultNoteOutbox.key(kept), record.get("key").getAsString());
+        assertEquals(kept.getSequence(), record.get("seq").getAsLong());
+        JsonObject note = record.getAsJsonObject("note");
+        assertEquals("c0", note.get("commitId").getAsString());
+        assertEquals("kept", note.get("jobFullName").getAsString());
+        assertFalse("tokens are not persisted", note.has("personalToken"));
+
+        ResultNoteOutbox replayed = new ResultNoteOutbox(file);
+        assertEquals(1, replayed.getPendingCount());
+        assertTrue(replayed.isCurrent(kept));
+    }
+
+    private static ResultNote note(String job, String commit) {
+        ResultNote note = new ResultNote();
+        note.setProjectApiUrl("https://e.coding.net/api/user/team/project/demo");
+        note.setTargetType(ResultNote.TARGET_COMMIT);
+        note.setCommitId(commit);
+        note.setJobFullName(job);
+        note.setPersonalToken("secret");
+        return note;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ *  The MIT License
+ *
+ * Copyright (c) 2011 Michael O'Cleirigh
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coding.jenkins.plugin.oauth;
+
+import hudson.model.Item;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PermissionDecisionCacheTest {
+    @Test
+    public void answerOfTheCurrentEpochIsServed() {
+        PermissionDecisionCache.put("current", "job", Item.READ, true, PermissionDecisionCache.epoch());
+        assertEquals(Boolean.TRUE, PermissionDecisionCache.get("current", "job", Item.READ));
+        assertNull(PermissionDecisionCache.get("current", "job", Item.CONFIGURE));
+    }
+
+    @Test
+    public void answerWorkedOutAcrossAnInvalidationIsNotKept() {
+        long epoch = PermissionDecisionCache.epoch();
+        // the job is saved while the answer is being worked out
+        PermissionDecisionCache.invalidateAll();
+        PermissionDecisionCache.put("racing", "job", Item.READ, true, epoch);
+        assertNull(PermissionDecisionCache.get("racing", "job", Item.READ));
+    }
+
+    @Test
+    public void answerKeptJustBeforeAnInvalidationIsNotServed() {
+        PermissionDecisionCache.put("outdated", "job", Item.READ, true, PermissionDecisionCache.epoch());
+        PermissionDecisionCache.invalidateAll();
+        assertNull(PermissionDecisionCache.get("outdated", "job", Item.READ));
+    }
+
+    @Test
+    public void changeOfAnItemNotIndexedKeepsTheAnswers() {
+        long epoch = PermissionDecisionCache.epoch();
+        RepositoryNameIndex.get().invalidate("not-indexed");
+        RepositoryNameIndex.get().invalidateAll("not-indexed/");
+        assertEquals(epoch, PermissionDecisionCache.epoch());
+    }
+}
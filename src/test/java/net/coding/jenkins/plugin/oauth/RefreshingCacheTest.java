@@ -0,0 +1,134 @@
+/**
+ *  The MIT License
+ *
+ * Copyright (c) 2011 Michael O'Cleirigh
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coding.jenkins.plugin.oauth;
+
+import com.google.common.base.Ticker;
+import net.coding.api.RateLimitHandler;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class RefreshingCacheTest {
+    private final AtomicLong nanos = new AtomicLong();
+    private final RefreshingCache<String> cache = new RefreshingCache<>(10, 20, 30, TimeUnit.SECONDS, new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    });
+
+    /**
+     * Counts its calls and answers the value of the call, or fails while {@link #fail} is set.
+     */
+    private static final class Loader implements Callable<String> {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicBoolean fail = new AtomicBoolean();
+        volatile boolean background;
+
+        @Override
+        public String call() throws IOException {
+            background = RateLimitHandler.isBackground();
+            if (fail.get()) {
+                throw new IOException("down");
+            }
+            return "v" + calls.incrementAndGet();
+        }
+    }
+
+    private void advance(long seconds) {
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    public void freshEntryIsServedAsIs() throws Exception {
+        Loader loader = new Loader();
+        assertEquals("v1", cache.get("key", loader));
+        assertFalse(loader.background);
+        advance(9);
+        assertEquals("v1", cache.get("key", loader));
+        assertEquals(1, loader.calls.get());
+    }
+
+    @Test
+    public void staleEntryIsServedWhileRefreshedInTheBackground() throws Exception {
+        Loader loader = new Loader();
+        cache.get("key", loader);
+        advance(10);
+        assertEquals("v1", cache.get("key", loader));
+        awaitValue("v2");
+        assertTrue(loader.background);
+        assertEquals("v2", cache.get("key", loader));
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void expiredEntryIsReloadedByTheCaller() throws Exception {
+        Loader loader = new Loader();
+        cache.get("key", loader);
+        advance(20);
+        assertNull(cache.getIfPresent("key"));
+        assertEquals("v2", cache.get("key", loader));
+        assertFalse(loader.background);
+    }
+
+    @Test
+    public void expiredEntryIsServedWithinGraceIfTheReloadFails() throws Exception {
+        Loader loader = new Loader();
+        cache.get("key", loader);
+        loader.fail.set(true);
+        advance(49);
+        assertEquals("v1", cache.get("key", loader));
+        advance(1);
+        try {
+            cache.get("key", loader);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals("down", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void prefetchLoadsInTheBackground() throws Exception {
+        Loader loader = new Loader();
+        cache.prefetch("key", loader);
+        awaitValue("v1");
+        assertTrue(loader.background);
+    }
+
+    private void awaitValue(String value) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!value.equals(cache.getIfPresent("key"))) {
+            assertTrue("timed out waiting for " + value, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
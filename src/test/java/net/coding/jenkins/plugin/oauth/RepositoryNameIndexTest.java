@@ -0,0 +1,85 @@
+/**
+ *  The MIT License
+ *
+ * Copyright (c) 2011 Michael O'Cleirigh
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package net.coding.jenkins.plugin.oauth;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RepositoryNameIndexTest {
+    private static final CodingRepositoryName REPOSITORY = new CodingRepositoryName("e.coding.net", "team", "repo");
+
+    private final RepositoryNameIndex index = new RepositoryNameIndex();
+
+    @Test
+    public void saveDropsTheItemOnly() {
+        index("folder", "folder/job");
+        index.invalidate("folder");
+        assertFalse(index.isIndexed("folder"));
+        assertTrue(index.isIndexed("folder/job"));
+    }
+
+    @Test
+    public void deleteDropsTheItemsBelow() {
+        index("folder", "folder/job", "folder/sub/job", "folder2/job");
+        index.onDeleted("folder");
+        assertFalse(index.isIndexed("folder"));
+        assertFalse(index.isIndexed("folder/job"));
+        assertFalse(index.isIndexed("folder/sub/job"));
+        assertTrue(index.isIndexed("folder2/job"));
+    }
+
+    @Test
+    public void renameDropsTheOldAndNewNames() {
+        index("job", "renamed", "job2");
+        index.onLocationChanged("job", "renamed");
+        assertFalse(index.isIndexed("job"));
+        assertFalse(index.isIndexed("renamed"));
+        assertTrue(index.isIndexed("job2"));
+    }
+
+    @Test
+    public void moveDropsTheItemsBelowTheOldName() {
+        index("folder", "folder/job", "other/folder", "other/job");
+        index.onLocationChanged("folder", "other/folder");
+        assertFalse(index.isIndexed("folder"));
+        assertFalse(index.isIndexed("folder/job"));
+        assertFalse(index.isIndexed("other/folder"));
+        assertTrue(index.isIndexed("other/job"));
+    }
+
+    @Test
+    public void lookupRacingWithAnInvalidationIsNotCached() {
+        long start = index.generation();
+        index.invalidate("job");
+        assertFalse(index.cache("job", REPOSITORY, start));
+        assertFalse(index.isIndexed("job"));
+    }
+
+    private void index(String... fullNames) {
+        for (String fullName : fullNames) {
+            assertTrue(index.cache(fullName, REPOSITORY, index.generation()));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RepositoryJobIndexTest {
+    @Test
+    public void sshAndHttpsRemotesShareKey() {
+        String key = "e.coding.net/team/project/repo";
+        assertEquals(key, RepositoryJobIndex.key("git@e.coding.net:team/project/repo.git"));
+        assertEquals(key, RepositoryJobIndex.key("https://user@e.coding.net/team/project/repo.git"));
+        assertEquals(key, RepositoryJobIndex.key("ssh://git@e.coding.net:22/team/project/repo.git/"));
+        assertEquals(key, RepositoryJobIndex.key("https://e.coding.net/Team/Project/Repo"));
+    }
+
+    @Test
+    public void otherHostsDoNotMatch() {
+        assertNotEquals(RepositoryJobIndex.key("https://github.com/team/repo.git"),
+                RepositoryJobIndex.key("https://e.coding.net/team/repo.git"));
+        assertNull(RepositoryJobIndex.key("team/repo"));
+        assertNull(RepositoryJobIndex.key("https://e.coding.net/"));
+        assertNull(RepositoryJobIndex.key(" "));
+    }
+}
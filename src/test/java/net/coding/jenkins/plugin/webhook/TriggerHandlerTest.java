@@ -0,0 +1,174 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import hudson.model.Action;
+import hudson.model.CauseAction;
+import hudson.model.Job;
+import hudson.model.Run;
+import net.coding.jenkins.plugin.bean.WebHookTask;
+import net.coding.jenkins.plugin.cause.CauseData;
+import net.coding.jenkins.plugin.cause.CodingWebHookCause;
+import net.coding.jenkins.plugin.webhook.filter.BranchFilterConfig;
+import net.coding.jenkins.plugin.webhook.filter.BranchFilterFactory;
+import net.coding.jenkins.plugin.webhook.filter.BranchFilterType;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static net.coding.jenkins.plugin.cause.CauseData.ActionType;
+import static org.junit.Assert.*;
+
+public class TriggerHandlerTest {
+    private final List<CodingWebHookCause> waiting = new ArrayList<>();
+    private final List<Integer> quietPeriods = new ArrayList<>();
+    private final List<CauseData> scheduled = new ArrayList<>();
+
+    private final TriggerHandler.BuildScheduler scheduler = new TriggerHandler.BuildScheduler() {
+        @Override
+        public void scheduleBuild(Job<?, ?> job, int quietPeriod, Action[] actions) {
+            quietPeriods.add(quietPeriod);
+            CodingWebHookCause cause = ((CauseAction) actions[0]).findCause(CodingWebHookCause.class);
+            scheduled.add(cause.getData());
+        }
+
+        @Override
+        public List<CodingWebHookCause> getWaitingCauses(Job<?, ?> job) {
+            return waiting;
+        }
+    };
+
+    @Test
+    public void pushIsScheduledRightAway() throws Exception {
+        handler(0).handle(job(), push("refs/heads/master", "b2"), true);
+        assertEquals(Collections.singletonList(0), quietPeriods);
+        assertEquals("b2", scheduled.get(0).getCommitId());
+    }
+
+    @Test
+    public void pushWaitsForTheCoalescingWindow() throws Exception {
+        handler(5).handle(job(), push("refs/heads/master", "b2"), true);
+        assertEquals(Collections.singletonList(5), quietPeriods);
+    }
+
+    @Test
+    public void pushIsCoalescedIntoWaitingBuildOfTheSameBranch() throws Exception {
+        CodingWebHookCause pending = new CodingWebHookCause(causeData(ActionType.PUSH, "refs/heads/master", "a1"));
+        waiting.add(pending);
+        handler(5).handle(job(), push("refs/heads/master", "b2"), true);
+        assertTrue(scheduled.isEmpty());
+        assertEquals("b2", pending.getData().getCommitId());
+        assertEquals(1, pending.getCoalescedEvents());
+    }
+
+    @Test
+    public void pushToAnotherBranchIsNotCoalesced() throws Exception {
+        CodingWebHookCause pending = new CodingWebHookCause(causeData(ActionType.PUSH, "refs/heads/develop", "a1"));
+        waiting.add(pending);
+        handler(5).handle(job(), push("refs/heads/master", "b2"), true);
+        assertEquals(1, scheduled.size());
+        assertEquals("a1", pending.getData().getCommitId());
+        assertEquals(0, pending.getCoalescedEvents());
+    }
+
+    @Test
+    public void newCommitSupersedesBuildOfTheSameBranch() {
+        CodingWebHookCause running = new CodingWebHookCause(causeData(ActionType.PUSH, "refs/heads/master", "a1"));
+        assertSame(running, TriggerHandler.findSuperseded(Collections.singletonList(running),
+                causeData(ActionType.PUSH, "refs/heads/master", "b2")));
+        assertNull(TriggerHandler.findSuperseded(Collections.singletonList(running),
+                causeData(ActionType.PUSH, "refs/heads/develop", "b2")));
+    }
+
+    @Test
+    public void redeliveryOfTheSameCommitSupersedesNothing() {
+        CodingWebHookCause running = new CodingWebHookCause(causeData(ActionType.PUSH, "refs/heads/master", "a1"));
+        assertNull(TriggerHandler.findSuperseded(Collections.singletonList(running),
+                causeData(ActionType.PUSH, "refs/heads/master", "a1")));
+    }
+
+    @Test
+    public void newCommitSupersedesBuildOfTheSameMergeRequest() {
+        CauseData data = causeData(ActionType.MR, null, "a1");
+        data.setMergeRequestIid(3L);
+        CodingWebHookCause running = new CodingWebHookCause(data);
+
+        CauseData newer = causeData(ActionType.MR, null, "b2");
+        newer.setMergeRequestIid(3L);
+        assertSame(running, TriggerHandler.findSuperseded(Collections.singletonList(running), newer));
+        CauseData other = causeData(ActionType.MR, null, "b2");
+        other.setMergeRequestIid(4L);
+        assertNull(TriggerHandler.findSuperseded(Collections.singletonList(running), other));
+    }
+
+    private TriggerHandler handler(int pushCoalescingWindow) {
+        return new TriggerHandler(true, true, "", BranchFilterFactory.newBranchFilter(
+                new BranchFilterConfig(BranchFilterType.All, "", "", "")), pushCoalescingWindow, true, scheduler);
+    }
+
+    private static CauseData causeData(ActionType actionType, String ref, String commitId) {
+        CauseData data = new CauseData();
+        data.setActionType(actionType);
+        data.setRef(ref);
+        data.setCommitId(commitId);
+        return data;
+    }
+
+    private static WebHookTask push(String ref, String after) throws Exception {
+        String json = "{\"ref\":\"" + ref + "\",\"before\":\"a1\",\"after\":\"" + after + "\"," +
+                "\"commits\":[{\"id\":\"" + after + "\",\"message\":\"change\"}]," +
+                "\"repository\":{\"full_name\":\"team/repo\",\"ssh_url\":\"git@e.coding.net:team/repo.git\"}," +
+                "\"sender\":{\"login\":\"user\",\"name\":\"User\"}}";
+        WebHookTask task = new WebHookTask();
+        task.setEvent(WebHookTask.EVENT_PUSH);
+        task.setPush(WebHookPayloadDecoder.decodePush(new StringReader(json)));
+        task.setParseSuccess(true);
+        return task;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Job<?, ?> job() {
+        return new Job(null, "job") {
+            @Override
+            public boolean isBuildable() {
+                return true;
+            }
+
+            @Override
+            protected SortedMap _getRuns() {
+                return new TreeMap();
+            }
+
+            @Override
+            protected void removeRun(Run run) {
+            }
+
+            @Override
+            public String getFullName() {
+                return "job";
+            }
+        };
+    }
+}
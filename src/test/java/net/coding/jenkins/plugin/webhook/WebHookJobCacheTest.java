@@ -0,0 +1,56 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WebHookJobCacheTest {
+    private final WebHookJobCache cache = WebHookJobCache.get();
+
+    @Test
+    public void invalidate() {
+        WebHookJobCache.Resolution resolution = new WebHookJobCache.Resolution(null, null);
+        assertTrue(cache.cache("folder/job", resolution, cache.generation()));
+        assertTrue(cache.cache("folder/other", resolution, cache.generation()));
+        assertTrue(cache.cache("folder2/job", resolution, cache.generation()));
+        assertSame(resolution, cache.getIfPresent("folder/job"));
+
+        // the jobs in a folder go with it
+        cache.invalidate("folder");
+        assertNull(cache.getIfPresent("folder/job"));
+        assertNull(cache.getIfPresent("folder/other"));
+        assertSame(resolution, cache.getIfPresent("folder2/job"));
+
+        cache.invalidateAll();
+        assertNull(cache.getIfPresent("folder2/job"));
+    }
+
+    @Test
+    public void resolutionRacingWithInvalidationIsNotCached() {
+        long start = cache.generation();
+        // the job is saved while it is being resolved
+        cache.invalidate("job");
+        assertFalse(cache.cache("job", new WebHookJobCache.Resolution(null, null), start));
+        assertNull(cache.getIfPresent("job"));
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import net.coding.jenkins.plugin.model.MergeRequest;
+import net.coding.jenkins.plugin.model.event.Push;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class WebHookPayloadDecoderTest {
+    @Test
+    public void decodePush() throws Exception {
+        String json = "{\"ref\":\"refs/heads/master\",\"before\":\"a1\",\"after\":\"b2\"," +
+                "\"commits\":[{\"id\":\"c1\",\"message\":\"first\",\"added\":[\"x\"]}," +
+                "{\"id\":\"b2\",\"message\":\"last [ci-skip]\",\"author\":{\"name\":\"n\"}}]," +
+                "\"head_commit\":{\"id\":\"b2\",\"message\":\"last [ci-skip]\"}," +
+                "\"repository\":{\"id\":1,\"full_name\":\"team/repo\",\"private\":true," +
+                "\"ssh_url\":\"git@e.coding.net:team/repo.git\",\"owner\":{\"login\":\"team\"}}," +
+                "\"sender\":{\"login\":\"user\",\"name\":\"User\",\"html_url\":null}}";
+        Push push = WebHookPayloadDecoder.decodePush(new StringReader(json));
+        assertEquals("refs/heads/master", push.getRef());
+        assertEquals("a1", push.getBefore());
+        assertEquals("b2", push.getAfter());
+        assertEquals(1, push.getCommits().size());
+        assertEquals("last [ci-skip]", push.getCommits().get(0).getMessage());
+        assertEquals("b2", push.getHead_commit().getId());
+        assertEquals("team/repo", push.getRepository().getFull_name());
+        assertEquals("git@e.coding.net:team/repo.git", push.getRepository().getSsh_url());
+        assertEquals("team", push.getRepository().getOwner().getLogin());
+        assertEquals("user", push.getSender().getLogin());
+        assertNull(push.getSender().getHtml_url());
+    }
+
+    @Test
+    public void decodeMergeRequest() throws Exception {
+        String json = "{\"action\":\"synchronize\",\"number\":\"3\"," +
+                "\"mergeRequest\":{\"id\":42,\"number\":3,\"title\":\"t\",\"merge_commit_sha\":\"abc\"," +
+                "\"head\":{\"ref\":\"feature\",\"repo\":{\"full_name\":\"team/repo\",\"owner\":{\"login\":\"team\"}}}," +
+                "\"base\":{\"ref\":\"master\"},\"comments\":7}," +
+                "\"repository\":{\"full_name\":\"team/repo\"}}";
+        net.coding.jenkins.plugin.model.event.MergeRequest event =
+                WebHookPayloadDecoder.decodeMergeRequest(new StringReader(json));
+        assertEquals("synchronize", event.getAction());
+        assertEquals(3, event.getNumber());
+        MergeRequest mr = event.getMergeRequest();
+        assertEquals(42, mr.getId());
+        assertEquals("abc", mr.getMerge_commit_sha());
+        assertEquals("feature", mr.getHead().getRef());
+        assertEquals("team", mr.getHead().getRepo().getOwner().getLogin());
+        assertEquals("master", mr.getBase().getRef());
+        assertNull(event.getSender());
+    }
+}
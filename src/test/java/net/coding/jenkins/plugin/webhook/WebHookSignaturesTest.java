@@ -0,0 +1,54 @@
+/**
+ * Jenkins plugin for Coding https://coding.net
+ *
+ * Copyright (c) 2016-2018 Shuanglei Tao <tsl0922@gmail.com>
+ * Copyright (c) 2016-present, Coding, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.coding.jenkins.plugin.webhook;
+
+import org.apache.commons.codec.digest.HmacUtils;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class WebHookSignaturesTest {
+    private static final String TOKEN = "secret";
+    private static final byte[] PAYLOAD = "{\"ref\":\"refs/heads/master\"}".getBytes(UTF_8);
+
+    @Test
+    public void sha1() {
+        String signature = "sha1=" + HmacUtils.hmacSha1Hex(TOKEN.getBytes(UTF_8), PAYLOAD);
+        assertTrue(WebHookSignatures.isValid(signature, PAYLOAD, TOKEN));
+        // the Mac instance is reused from the pool for the second call
+        assertTrue(WebHookSignatures.isValid(signature, PAYLOAD, TOKEN));
+        assertFalse(WebHookSignatures.isValid(signature, PAYLOAD, "other"));
+    }
+
+    @Test
+    public void sha256() {
+        String signature = "sha256=" + HmacUtils.hmacSha256Hex(TOKEN.getBytes(UTF_8), PAYLOAD);
+        assertTrue(WebHookSignatures.isValid(signature, PAYLOAD, TOKEN));
+        assertFalse(WebHookSignatures.isValid(signature, "{}".getBytes(UTF_8), TOKEN));
+    }
+
+    @Test
+    public void malformed() {
+        assertFalse(WebHookSignatures.isValid(null, PAYLOAD, TOKEN));
+        assertFalse(WebHookSignatures.isValid("md5=abcd", PAYLOAD, TOKEN));
+        assertFalse(WebHookSignatures.isValid("sha1=not-hex", PAYLOAD, TOKEN));
+    }
+}
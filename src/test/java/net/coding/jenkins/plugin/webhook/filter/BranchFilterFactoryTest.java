@@ -0,0 +1,47 @@
+package net.coding.jenkins.plugin.webhook.filter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BranchFilterFactoryTest {
+    @Test
+    public void nameBasedFilter() {
+        BranchFilter filter = BranchFilterFactory.newBranchFilter(new BranchFilterConfig(
+                BranchFilterType.NameBasedFilter, "master, feature/*, release/**", "feature/wip-?", null));
+        assertTrue(filter.isBranchAllowed("master"));
+        assertTrue(filter.isBranchAllowed("feature/login"));
+        assertFalse(filter.isBranchAllowed("feature/login/part"));
+        assertFalse(filter.isBranchAllowed("feature/wip-1"));
+        assertTrue(filter.isBranchAllowed("feature/wip-12"));
+        assertTrue(filter.isBranchAllowed("release"));
+        assertTrue(filter.isBranchAllowed("release/1.0/hotfix"));
+        assertFalse(filter.isBranchAllowed("develop"));
+        assertFalse(filter.isBranchAllowed("refs/heads/master"));
+        // served from the decision cache
+        assertTrue(filter.isBranchAllowed("master"));
+        assertTrue(filter.isBranchAllowed("master", "refs/heads/master"));
+        assertFalse(filter.isBranchAllowed("develop", "refs/heads/develop"));
+    }
+
+    @Test
+    public void nameBasedFilterQuotesLiterals() {
+        BranchFilter filter = BranchFilterFactory.newBranchFilter(new BranchFilterConfig(
+                BranchFilterType.NameBasedFilter, "v1.0+*", "", null));
+        assertTrue(filter.isBranchAllowed("v1.0+rc"));
+        assertFalse(filter.isBranchAllowed("v1x0+rc"));
+    }
+
+    @Test
+    public void regexBasedFilter() {
+        BranchFilter filter = BranchFilterFactory.newBranchFilter(new BranchFilterConfig(
+                BranchFilterType.RegexBasedFilter, null, null, "(.*/)?(master|release-.*)"));
+        assertTrue(filter.isBranchAllowed("master"));
+        assertTrue(filter.isBranchAllowed("develop", "refs/heads/release-1"));
+        assertFalse(filter.isBranchAllowed("develop", "refs/heads/develop"));
+
+        BranchFilter invalid = BranchFilterFactory.newBranchFilter(new BranchFilterConfig(
+                BranchFilterType.RegexBasedFilter, null, null, "(master"));
+        assertFalse(invalid.isBranchAllowed("master"));
+    }
+}